@@ -0,0 +1,282 @@
+package a05;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+/**
+ * Asynchronous nearest-neighbor queries against a KdTreeST, answered in micro-batches.
+ *
+ * Thousands of threads each asking for one nearest() pay for one whole tree descent
+ * apiece, from a cold cache. Here a query only joins a queue: a collector thread
+ * closes a batch once it holds maxBatch queries or its first query has waited for the
+ * window, sorts the batch along the Z-curve (as MortonST lays out its points), and
+ * hands it to the fork/join pool in runs of consecutive queries. Queries next to each
+ * other in a run are next to each other in the plane, so each descent starts from the
+ * answer to the one before, and finds the top of the tree still in cache.
+ *
+ *     nearestAsync ──▶ queue ──▶ collector ──▶ sort ──▶ runs on the fork/join pool
+ *                                (window or maxBatch)      └─▶ complete the futures
+ *
+ * The tree is never modified here: every batch runs against the tree published when
+ * it starts, and publish() hands in a new one for later batches, so a tree must not be
+ * changed once it has been published.
+ *
+ * @author Kevin Mora
+ */
+public class AsyncKdTreeST<Value> implements AutoCloseable {
+	// queries per fork/join task
+	private static final int RUN = 64;
+	// threads blocked on queries in main(), enough to fill the batches
+	private static final int CALLERS = 1024;
+
+	private static class Request<Value> {
+		private final double x, y;
+		private final CompletableFuture<Value> future;
+
+		Request(double x, double y, CompletableFuture<Value> future) {
+			this.x = x;
+			this.y = y;
+			this.future = future;
+		}
+	}
+
+	// tells the collector to finish its batch and stop
+	private static final Request<Object> CLOSE = new Request<>(0, 0, null);
+
+	private final long windowNanos;
+	private final int maxBatch;
+	private final LinkedBlockingQueue<Request<Value>> queue = new LinkedBlockingQueue<>();
+	private final ReentrantReadWriteLock closing = new ReentrantReadWriteLock();
+	private final Thread collector;
+	private volatile KdTreeST<Value> tree;
+	private boolean closed;
+
+	/**
+	 * Answers queries against the tree in batches of up to 1024 queries, or 200 microseconds.
+	 */
+	public AsyncKdTreeST(KdTreeST<Value> tree) {
+		this(tree, 200, 1024);
+	}
+
+	/**
+	 * Answers queries against the tree in batches of up to maxBatch queries; no query waits
+	 * more than windowMicros for its batch to close.
+	 */
+	public AsyncKdTreeST(KdTreeST<Value> tree, long windowMicros, int maxBatch) {
+		if (tree == null) {
+			throw new NullPointerException();
+		}
+		if (windowMicros < 0 || maxBatch < 1) {
+			throw new IllegalArgumentException("window can't be negative and batches can't be empty");
+		}
+		this.tree = tree;
+		this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+		this.maxBatch = maxBatch;
+		collector = new Thread(this::collect, "kdtree-batcher");
+		collector.setDaemon(true);
+		collector.start();
+	}
+
+	/**
+	 * Replaces the tree for the batches that start from now on.
+	 */
+	public void publish(KdTreeST<Value> tree) {
+		if (tree == null) {
+			throw new NullPointerException();
+		}
+		this.tree = tree;
+	}
+
+	/**
+	 * Returns a future for the value of the nearest neighbor to (x, y);
+	 * it completes with null if the tree is empty.
+	 */
+	public CompletableFuture<Value> nearestAsync(double x, double y) {
+		if (Double.isNaN(x) || Double.isNaN(y)) {
+			throw new IllegalArgumentException("coordinates can't be NaN");
+		}
+		CompletableFuture<Value> future = new CompletableFuture<>();
+		closing.readLock().lock();
+		try {
+			if (closed) {
+				throw new IllegalStateException("closed");
+			}
+			queue.add(new Request<>(x, y, future));
+		} finally {
+			closing.readLock().unlock();
+		}
+		return future;
+	}
+
+	/**
+	 * The collector thread: waits for a query, gathers more until the window closes or
+	 * the batch is full, and dispatches the batch.
+	 */
+	private void collect() {
+		boolean done = false;
+		while (!done) {
+			ArrayList<Request<Value>> batch = new ArrayList<>();
+			try {
+				Request<Value> request = queue.take();
+				long deadline = System.nanoTime() + windowNanos;
+				while (request != CLOSE) {
+					batch.add(request);
+					if (batch.size() == maxBatch) break;
+					request = queue.poll();
+					if (request == null) {
+						long wait = deadline - System.nanoTime();
+						if (wait <= 0) break;
+						request = queue.poll(wait, TimeUnit.NANOSECONDS);
+						if (request == null) break;
+					}
+				}
+				done = request == CLOSE;
+			} catch (InterruptedException e) {
+				done = true;
+			}
+			if (!batch.isEmpty()) dispatch(batch);
+		}
+	}
+
+	/**
+	 * Sorts the batch along the Z-curve over its bounding box and runs it on the fork/join pool.
+	 */
+	private void dispatch(ArrayList<Request<Value>> batch) {
+		int n = batch.size();
+		double xmin = Double.POSITIVE_INFINITY, ymin = Double.POSITIVE_INFINITY;
+		double xmax = Double.NEGATIVE_INFINITY, ymax = Double.NEGATIVE_INFINITY;
+		for (Request<Value> r : batch) {
+			xmin = Math.min(xmin, r.x);
+			ymin = Math.min(ymin, r.y);
+			xmax = Math.max(xmax, r.x);
+			ymax = Math.max(ymax, r.y);
+		}
+		// 16-bit cells, so code << 31 | index can't overflow for any batch an int can count
+		double sx = xmax > xmin ? 65535 / (xmax - xmin) : 0;
+		double sy = ymax > ymin ? 65535 / (ymax - ymin) : 0;
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			Request<Value> r = batch.get(i);
+			keys[i] = MortonST.encode((int) ((r.x - xmin) * sx), (int) ((r.y - ymin) * sy)) << 31 | i;
+		}
+		Arrays.sort(keys);
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Request<Value>[] sorted = new Request[n];
+		for (int i = 0; i < n; i++) {
+			sorted[i] = batch.get((int) (keys[i] & Integer.MAX_VALUE));
+		}
+		ForkJoinPool.commonPool().execute(new Run<>(tree, sorted, 0, n));
+	}
+
+	/**
+	 * Answers sorted[lo, hi) against one tree, splitting into runs of RUN queries.
+	 */
+	private static class Run<Value> extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		// fork/join tasks are never serialized
+		private final transient KdTreeST<Value> tree;
+		private final transient Request<Value>[] sorted;
+		private final int lo, hi;
+
+		Run(KdTreeST<Value> tree, Request<Value>[] sorted, int lo, int hi) {
+			this.tree = tree;
+			this.sorted = sorted;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		protected void compute() {
+			if (hi - lo > RUN) {
+				int mid = lo + (hi - lo) / 2;
+				invokeAll(new Run<>(tree, sorted, lo, mid), new Run<>(tree, sorted, mid, hi));
+				return;
+			}
+			KdTreeST.Entry<Value> hint = null;
+			for (int i = lo; i < hi; i++) {
+				Request<Value> r = sorted[i];
+				try {
+					hint = tree.nearestEntry(new Point2D(r.x, r.y), hint);
+					r.future.complete(hint == null ? null : hint.value());
+				} catch (RuntimeException e) {
+					r.future.completeExceptionally(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops taking queries; the ones already taken are still answered.
+	 */
+	@SuppressWarnings("unchecked")
+	public void close() {
+		closing.writeLock().lock();
+		try {
+			if (closed) return;
+			closed = true;
+			queue.add((Request<Value>) (Request<?>) CLOSE);
+		} finally {
+			closing.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Client application: CALLERS threads share the queries, each calling nearest()
+	 * directly and then through nearestAsync().
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		String filename = "src/points/input100K.txt";
+		In in = new In(filename);
+		KdTreeST<Integer> kdtree = new KdTreeST<>();
+		for (int i = 0; !in.isEmpty(); i++) {
+			kdtree.put(new Point2D(in.readDouble(), in.readDouble()), i);
+		}
+
+		int numberOfTimesToCalculate = 1000000;
+		double[] xs = new double[numberOfTimesToCalculate];
+		double[] ys = new double[numberOfTimesToCalculate];
+		for (int i = 0; i < numberOfTimesToCalculate; i++) {
+			xs[i] = StdRandom.uniform();
+			ys[i] = StdRandom.uniform();
+		}
+
+		AtomicLong checksum = new AtomicLong();
+		long starttime = System.currentTimeMillis();
+		ExecutorService threads = Executors.newFixedThreadPool(CALLERS);
+		for (int i = 0; i < numberOfTimesToCalculate; i++) {
+			int j = i;
+			threads.execute(() -> checksum.addAndGet(kdtree.nearestEntry(new Point2D(xs[j], ys[j])).value()));
+		}
+		threads.shutdown();
+		threads.awaitTermination(1, TimeUnit.HOURS);
+		StdOut.println("nearest(): " + (System.currentTimeMillis() - starttime) / 1000.0 + ", checksum " + checksum);
+
+		for (long window : new long[] { 50, 200, 1000 }) {
+			checksum.set(0);
+			starttime = System.currentTimeMillis();
+			try (AsyncKdTreeST<Integer> async = new AsyncKdTreeST<>(kdtree, window, 1024)) {
+				threads = Executors.newFixedThreadPool(CALLERS);
+				for (int i = 0; i < numberOfTimesToCalculate; i++) {
+					int j = i;
+					threads.execute(() -> checksum.addAndGet(async.nearestAsync(xs[j], ys[j]).join()));
+				}
+				threads.shutdown();
+				threads.awaitTermination(1, TimeUnit.HOURS);
+			}
+			StdOut.println("nearestAsync(), " + window + "µs window: " + (System.currentTimeMillis() - starttime) / 1000.0 + ", checksum " + checksum);
+		}
+	}
+}
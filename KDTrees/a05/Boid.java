@@ -76,7 +76,7 @@ public class Boid {
             double distanceTo = myPosition.distanceTo(neighborPosition);
             
             if (distanceTo == 0.0)
-                break; // Don't count self
+                continue; // Don't count self
 
             Vector avoidanceVector = myPosition.minus(neighborPosition);
             Vector scaledAvoidanceVector = avoidanceVector.scale(1.0 / distanceTo);            
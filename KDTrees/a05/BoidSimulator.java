@@ -4,6 +4,8 @@ import java.awt.event.KeyEvent;
 
 import edu.princeton.cs.algs4.Point2D;
 import edu.princeton.cs.algs4.Queue;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.ST;
 import edu.princeton.cs.algs4.StdDraw;
 import edu.princeton.cs.algs4.StdRandom;
 
@@ -35,11 +37,10 @@ public class BoidSimulator {
     // start in "tracking" mode
     private static char mode = TRACKING_MODE;
     
-    @SuppressWarnings("unused")
-	private static Iterable<Boid> lookUpBoids(KdTreeST<Boid> bkd, Iterable<Point2D> points) {
+    private static Iterable<Boid> lookUpBoids(Iterable<KdTreeST.Entry<Boid>> entries) {
         Queue<Boid> values = new Queue<Boid>();
-        for (Point2D p : points) {
-            values.enqueue(bkd.get(p));
+        for (KdTreeST.Entry<Boid> e : entries) {
+            values.enqueue(e.value());
         }
         return values;
     }
@@ -51,8 +52,7 @@ public class BoidSimulator {
         int NUM_BOIDS = 1000;
         
         // Each boid tracks a number of nearest neighbors equal to FRIENDS
-        @SuppressWarnings("unused")
-		int FRIENDS = 10;
+        int FRIENDS = 10;
         Boid[] boids = new Boid[NUM_BOIDS];
         double meanX, meanY;
         double radius = 0.5;
@@ -68,6 +68,13 @@ public class BoidSimulator {
             boids[i] = new Boid(startX, startY, velX, velY);
         }
         
+        // Since the boids start out random, the first tree is roughly balanced,
+        // despite the lack of balancing in KdTreeST.
+        KdTreeST<Boid> bkd = new KdTreeST<Boid>();
+        for (int i = 0; i < NUM_BOIDS; i++) {
+            bkd.put(boids[i].position(), boids[i]);
+        }
+        
         while (true) {
             // process keyboard input
             if (StdDraw.isKeyPressed(KeyEvent.VK_I)) // press "i" to zoom in 
@@ -86,13 +93,23 @@ public class BoidSimulator {
             StdDraw.setXscale(currentX - radius, currentX + radius);
             StdDraw.setYscale(currentY - radius, currentY + radius);
             
-            // draw all boids and calculate their meanX and meanY
+            // Each boid only moves a little per frame, so rather than rebuilding
+            // the KdTree every frame, the previous frame's tree is refit to the
+            // new positions; refit() rebuilds whatever subtrees fall out of shape.
+            bkd.refit(Boid::position);
+            
+            // calculate the meanX and meanY of all boids
             meanX = 0;
             meanY = 0;
             for (int i = 0; i < NUM_BOIDS; i++) {
                 meanX += boids[i].x()/NUM_BOIDS;
                 meanY += boids[i].y()/NUM_BOIDS;
-                boids[i].draw();
+            }
+            
+            // draw only the boids in view
+            RectHV viewport = new RectHV(currentX - radius, currentY - radius, currentX + radius, currentY + radius);
+            for (KdTreeST.Entry<Boid> e : bkd.rangeEntries(viewport)) {
+                e.value().draw();
             }
             
             // draw the hawk
@@ -124,24 +141,18 @@ public class BoidSimulator {
                 currentY = hawk.y();
             }
             
-            // The entire KdTree must be rebuilt every frame. Since the boids
-            // are random, we expect a roughly balanced tree, despite the
-            // lack of balancing in KdTreeST.
-            
-            KdTreeST<Boid> bkd = new KdTreeST<Boid>();
+            // Every boid needs its FRIENDS nearest neighbors, so all of the
+            // queries are answered at once by joining the tree with itself.
+            // The entries carry the boids, so no second lookup in bkd is needed.
+            ST<Point2D, Iterable<KdTreeST.Entry<Boid>>> friends = KdTreeJoin.allNearestEntries(bkd, bkd, FRIENDS);
             for (int i = 0; i < NUM_BOIDS; i++) {
-                bkd.put(boids[i].position(), boids[i]);
+                Iterable<KdTreeST.Entry<Boid>> kNearestEntries = friends.get(boids[i].position());
+                Iterable<Boid> kNearest = lookUpBoids(kNearestEntries);
+                boids[i].updatePositionAndVelocity(kNearest, hawk);
             }
             
-            // TODO:
-            // for (int i = 0; i < NUM_BOIDS; i++) {
-            //    Iterable<Point2D> kNearestPoints = bkd.nearest(boids[i].position(), FRIENDS);
-            //    Iterable<Boid> kNearest = lookUpBoids(bkd, kNearestPoints);
-            //    boids[i].updatePositionAndVelocity(kNearest, hawk);
-            //}
-            
             // The hawk will chase the nearest boid.
-            Boid closestBoid = bkd.get(bkd.nearest(hawk.position()));
+            Boid closestBoid = bkd.nearestEntry(hawk.position()).value();
             hawk.updatePositionAndVelocity(closestBoid);
             
             //hawk.updatePositionAndVelocity(bkd.nearest(new Boid(hawk.x(), hawk.y())));
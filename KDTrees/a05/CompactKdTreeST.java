@@ -0,0 +1,335 @@
+package a05;
+
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.Queue;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+/**
+ * A static 2d-tree over a known bounded domain, traversed on 16-bit coordinates.
+ *
+ * The domain is cut into 65536 x 65536 cells and every point is reduced to its cell:
+ * two chars, 4 bytes, where KdTreeST spends a Node, a Point2D and a RectHV. The tree
+ * has no nodes at all: a[lo, hi) is a subtree whose root is its middle element, with the
+ * smaller cells to its left and the larger ones to its right (x then y, alternating),
+ * and the regions of the subtrees are worked out on the way down. Only the cells are
+ * touched while searching; the full-precision coordinates are read just for the
+ * candidates a cell can't settle: a possible nearest neighbor, or a point whose cell
+ * lies on the edge of the query rectangle.
+ *
+ *     cells    qx, qy   char[]    traversal, always in cache
+ *     exact    xs, ys   double[]  final check of the candidates
+ *              values   Value[]
+ *
+ * @author Kevin Mora
+ */
+public class CompactKdTreeST<Value> {
+	private static final int CELLS = 1 << 16;
+	// slack, in cells, against rounding when bounds from cells are compared with exact distances
+	private static final double EPS = 1e-9;
+
+	private final int n;
+	private final char[] qx;
+	private final char[] qy;
+	private final double[] xs;
+	private final double[] ys;
+	private final Value[] values;
+	private final RectHV domain;
+	private final double scaleX, scaleY;
+
+	/**
+	 * Builds the tree from the entries; later entries for the same point win.
+	 * Every point must lie in the domain.
+	 */
+	@SuppressWarnings("unchecked")
+	public CompactKdTreeST(Iterable<? extends KdTreeST.Entry<Value>> entries, RectHV domain) {
+		if (entries == null || domain == null) {
+			throw new NullPointerException();
+		}
+		if (domain.width() <= 0 || domain.height() <= 0) {
+			throw new IllegalArgumentException("the domain must have an area");
+		}
+		this.domain = domain;
+		scaleX = CELLS / domain.width();
+		scaleY = CELLS / domain.height();
+
+		HashMap<Point2D, Value> unique = new HashMap<>();
+		for (KdTreeST.Entry<Value> e : entries) {
+			if (e.point() == null || e.value() == null) {
+				throw new NullPointerException();
+			}
+			if (!domain.contains(e.point())) {
+				throw new IllegalArgumentException(e.point() + " is outside the domain");
+			}
+			unique.put(e.point(), e.value());
+		}
+		n = unique.size();
+		Point2D[] points = unique.keySet().toArray(new Point2D[0]);
+		char[] cx = new char[n];
+		char[] cy = new char[n];
+		int[] a = new int[n];
+		for (int i = 0; i < n; i++) {
+			cx[i] = (char) cell(points[i].x(), domain.xmin(), scaleX);
+			cy[i] = (char) cell(points[i].y(), domain.ymin(), scaleY);
+			a[i] = i;
+		}
+		build(a, cx, cy, 0, n, true);
+
+		qx = new char[n];
+		qy = new char[n];
+		xs = new double[n];
+		ys = new double[n];
+		values = (Value[]) new Object[n];
+		for (int i = 0; i < n; i++) {
+			qx[i] = cx[a[i]];
+			qy[i] = cy[a[i]];
+			xs[i] = points[a[i]].x();
+			ys[i] = points[a[i]].y();
+			values[i] = unique.get(points[a[i]]);
+		}
+	}
+
+	/**
+	 * The cell of a coordinate in the domain; the far edge belongs to the last cell.
+	 */
+	private static int cell(double x, double min, double scale) {
+		return Math.min(CELLS - 1, (int) ((x - min) * scale));
+	}
+
+	/**
+	 * Private helper method for the constructor: puts the median cell of a[lo, hi) in the middle,
+	 * cells no larger before it and cells no smaller after it, and recurses on both halves.
+	 */
+	private static void build(int[] a, char[] cx, char[] cy, int lo, int hi, boolean vertical) {
+		if (hi - lo < 2) return;
+		char[] key = vertical ? cx : cy;
+		int k = (lo + hi) >>> 1;
+		int l = lo, h = hi - 1;
+		while (l < h) {
+			swap(a, l, ThreadLocalRandom.current().nextInt(l, h + 1));
+			char pivot = key[a[l]];
+			int i = l, j = h + 1;
+			while (true) {
+				while (key[a[++i]] < pivot) if (i == h) break;
+				while (pivot < key[a[--j]]) if (j == l) break;
+				if (i >= j) break;
+				swap(a, i, j);
+			}
+			swap(a, l, j);
+			if (j > k) h = j - 1;
+			else if (j < k) l = j + 1;
+			else break;
+		}
+		build(a, cx, cy, lo, k, !vertical);
+		build(a, cx, cy, k + 1, hi, !vertical);
+	}
+
+	private static void swap(int[] a, int i, int j) {
+		int t = a[i];
+		a[i] = a[j];
+		a[j] = t;
+	}
+
+	/**
+	 * Returns the number of points.
+	 */
+	public int size() {
+		return n;
+	}
+
+	/**
+	 * Returns the status of the symbol table.
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Returns the value associated with a point.
+	 */
+	public Value get(Point2D p) {
+		if (p == null) {
+			throw new NullPointerException("arguments can't be null");
+		}
+		if (!domain.contains(p)) return null;
+		int i = get(cell(p.x(), domain.xmin(), scaleX), cell(p.y(), domain.ymin(), scaleY), p, 0, n, true);
+		return i < 0 ? null : values[i];
+	}
+
+	/**
+	 * Private helper method for get(); a cell equal to the root's may be on either side.
+	 */
+	private int get(int cx, int cy, Point2D p, int lo, int hi, boolean vertical) {
+		if (lo >= hi) return -1;
+		int mid = (lo + hi) >>> 1;
+		if (qx[mid] == cx && qy[mid] == cy && xs[mid] == p.x() && ys[mid] == p.y()) return mid;
+		int c = vertical ? cx : cy, q = vertical ? qx[mid] : qy[mid];
+		int found = c <= q ? get(cx, cy, p, lo, mid, !vertical) : -1;
+		if (found < 0 && c >= q) found = get(cx, cy, p, mid + 1, hi, !vertical);
+		return found;
+	}
+
+	/**
+	 * Determines if Symbol Table has a point.
+	 */
+	public boolean contains(Point2D p) {
+		return get(p) != null;
+	}
+
+	/**
+	 * Returns all the points that are inside the rectangle.
+	 */
+	public Iterable<Point2D> range(RectHV rect) {
+		if (rect == null) {
+			throw new NullPointerException();
+		}
+		Queue<Point2D> rectPoints = new Queue<>();
+		double[] r = {
+			(rect.xmin() - domain.xmin()) * scaleX, (rect.ymin() - domain.ymin()) * scaleY,
+			(rect.xmax() - domain.xmin()) * scaleX, (rect.ymax() - domain.ymin()) * scaleY
+		};
+		range(rect, r, rectPoints, 0, n, true, 0, 0, CELLS, CELLS);
+		return rectPoints;
+	}
+
+	/**
+	 * Private helper method for range(); r is the rectangle in cells, and the subtree's points
+	 * lie in the cells [ulo, uhi] x [vlo, vhi]. A point whose cell is strictly inside r is
+	 * inside the rectangle; only the ones on its edge are checked exactly.
+	 */
+	private void range(RectHV rect, double[] r, Queue<Point2D> rectPoints, int lo, int hi, boolean vertical,
+			double ulo, double vlo, double uhi, double vhi) {
+		if (lo >= hi || uhi < r[0] || ulo > r[2] || vhi < r[1] || vlo > r[3]) return;
+		int mid = (lo + hi) >>> 1;
+		int u = qx[mid], v = qy[mid];
+		if (u + 1 >= r[0] && u <= r[2] && v + 1 >= r[1] && v <= r[3]) {
+			boolean inside = u > r[0] && u + 1 < r[2] && v > r[1] && v + 1 < r[3];
+			if (inside || rect.xmin() <= xs[mid] && xs[mid] <= rect.xmax() && rect.ymin() <= ys[mid] && ys[mid] <= rect.ymax()) {
+				rectPoints.enqueue(new Point2D(xs[mid], ys[mid]));
+			}
+		}
+		if (vertical) {
+			range(rect, r, rectPoints, lo, mid, false, ulo, vlo, u + 1, vhi);
+			range(rect, r, rectPoints, mid + 1, hi, false, u, vlo, uhi, vhi);
+		} else {
+			range(rect, r, rectPoints, lo, mid, true, ulo, vlo, uhi, v + 1);
+			range(rect, r, rectPoints, mid + 1, hi, true, ulo, v, uhi, vhi);
+		}
+	}
+
+	/**
+	 * Returns the nearest neighbor to point p;
+	 * null if the Symbol Table is empty.
+	 */
+	public Point2D nearest(Point2D p) {
+		int i = nearestIndex(p);
+		return i < 0 ? null : new Point2D(xs[i], ys[i]);
+	}
+
+	/**
+	 * Returns the entry of the nearest neighbor to point p;
+	 * null if the Symbol Table is empty.
+	 */
+	public KdTreeST.Entry<Value> nearestEntry(Point2D p) {
+		int i = nearestIndex(p);
+		return i < 0 ? null : new KdTreeST.Node<>(new Point2D(xs[i], ys[i]), values[i], null);
+	}
+
+	private int nearestIndex(Point2D p) {
+		if (p == null) {
+			throw new NullPointerException();
+		}
+		double u = (p.x() - domain.xmin()) * scaleX, v = (p.y() - domain.ymin()) * scaleY;
+		double[] best = { Double.POSITIVE_INFINITY, -1 };
+		nearest(p.x(), p.y(), u, v, 0, n, true, 0, 0, CELLS, CELLS, best);
+		return (int) best[1];
+	}
+
+	/**
+	 * Private helper method for nearest; (u, v) is p in cells, and best holds the squared
+	 * distance and index of the paragon. A point is only measured exactly when its cell
+	 * is closer than the paragon.
+	 */
+	private void nearest(double x, double y, double u, double v, int lo, int hi, boolean vertical,
+			double ulo, double vlo, double uhi, double vhi, double[] best) {
+		if (lo >= hi || distanceSquared(u, v, ulo, vlo, uhi, vhi) >= best[0]) return;
+		int mid = (lo + hi) >>> 1;
+		int cu = qx[mid], cv = qy[mid];
+		if (distanceSquared(u, v, cu, cv, cu + 1, cv + 1) < best[0]) {
+			double dx = x - xs[mid], dy = y - ys[mid];
+			double d = dx * dx + dy * dy;
+			if (d < best[0]) {
+				best[0] = d;
+				best[1] = mid;
+			}
+		}
+		if (vertical) {
+			if (u < cu) {
+				nearest(x, y, u, v, lo, mid, false, ulo, vlo, cu + 1, vhi, best);
+				nearest(x, y, u, v, mid + 1, hi, false, cu, vlo, uhi, vhi, best);
+			} else {
+				nearest(x, y, u, v, mid + 1, hi, false, cu, vlo, uhi, vhi, best);
+				nearest(x, y, u, v, lo, mid, false, ulo, vlo, cu + 1, vhi, best);
+			}
+		} else {
+			if (v < cv) {
+				nearest(x, y, u, v, lo, mid, true, ulo, vlo, uhi, cv + 1, best);
+				nearest(x, y, u, v, mid + 1, hi, true, ulo, cv, uhi, vhi, best);
+			} else {
+				nearest(x, y, u, v, mid + 1, hi, true, ulo, cv, uhi, vhi, best);
+				nearest(x, y, u, v, lo, mid, true, ulo, vlo, uhi, cv + 1, best);
+			}
+		}
+	}
+
+	/**
+	 * A lower bound on the squared distance, in the plane, from the point (u, v) to the
+	 * box of cells [ulo, uhi] x [vlo, vhi].
+	 */
+	private double distanceSquared(double u, double v, double ulo, double vlo, double uhi, double vhi) {
+		double du = Math.max(0, Math.max(ulo - u, u - uhi) - EPS) / scaleX;
+		double dv = Math.max(0, Math.max(vlo - v, v - vhi) - EPS) / scaleY;
+		return du * du + dv * dv;
+	}
+
+	private static long heap() {
+		System.gc();
+		return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+	}
+
+	/**
+	 * Client application: memory and query time against KdTreeST.
+	 */
+	public static void main(String[] args) {
+		String filename = "src/points/input100K.txt";
+		In in = new In(filename);
+		Queue<KdTreeST.Entry<Integer>> entries = new Queue<>();
+		for (int i = 0; !in.isEmpty(); i++) {
+			entries.enqueue(new KdTreeST.Node<>(new Point2D(in.readDouble(), in.readDouble()), i, null));
+		}
+
+		long before = heap();
+		KdTreeST<Integer> kdtree = KdTreeST.balanced(entries);
+		StdOut.println("KdTreeST heap: " + (heap() - before) / 1024 + " KB");
+		before = heap();
+		CompactKdTreeST<Integer> compact = new CompactKdTreeST<>(entries, new RectHV(0, 0, 1, 1));
+		StdOut.println("CompactKdTreeST heap: " + (heap() - before) / 1024 + " KB");
+
+		int numberOfTimesToCalculate = 1000000;
+		Point2D[] queries = new Point2D[numberOfTimesToCalculate];
+		for (int i = 0; i < numberOfTimesToCalculate; i++) {
+			queries[i] = new Point2D(StdRandom.uniform(), StdRandom.uniform());
+		}
+		long starttime = System.currentTimeMillis();
+		for (Point2D q : queries) kdtree.nearest(q);
+		StdOut.println("KdTreeST nearest: " + (System.currentTimeMillis() - starttime) / 1000.0);
+		starttime = System.currentTimeMillis();
+		for (Point2D q : queries) compact.nearest(q);
+		StdOut.println("CompactKdTreeST nearest: " + (System.currentTimeMillis() - starttime) / 1000.0);
+	}
+}
@@ -0,0 +1,552 @@
+package a05;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * A KdTreeST that survives a crash.
+ *
+ * Every put() and delete() is applied to the in-memory tree and appended to an
+ * in-memory batch; a background thread writes the batch to an append-only log and
+ * fsyncs it every few milliseconds (group commit), so a put never waits on the disk.
+ * A client that needs its writes on disk calls sync(), which waits for the batch
+ * holding them; concurrent callers share one fsync.
+ *
+ * Log record:   ┌────────┬───────┬────┬───┬───┬─────────┐
+ *               │ length │ crc32 │ op │ x │ y │ [value] │
+ *               └────────┴───────┴────┴───┴───┴─────────┘
+ *
+ * Once the log grows past a threshold it is compacted: the tree is dumped in
+ * level-order to snapshot-(g+1) and new records go to wal-(g+1). On restart the
+ * newest snapshot is loaded and only the logs of its generation and later are
+ * replayed, stopping at the first torn or corrupt record.
+ *
+ * @author Kevin Mora
+ */
+public class DurableKdTreeST<Value> implements AutoCloseable {
+
+	/**
+	 * Writes and reads values to and from the log and the snapshots.
+	 */
+	public interface Codec<Value> {
+		void write(DataOutput out, Value val) throws IOException;
+		Value read(DataInput in) throws IOException;
+	}
+
+	public static final Codec<Integer> INTEGER = new Codec<Integer>() {
+		public void write(DataOutput out, Integer val) throws IOException {
+			out.writeInt(val);
+		}
+
+		public Integer read(DataInput in) throws IOException {
+			return in.readInt();
+		}
+	};
+
+	private static final byte PUT = 1;
+	private static final byte DELETE = 2;
+	private static final int SNAPSHOT_MAGIC = 0x4B445331;
+	// longest record payload; append() refuses longer ones, replay() takes them for a torn tail
+	private static final int MAX_RECORD = 1 << 20;
+
+	// defaults: fsync every 5 ms, compact once the log passes 64 MB
+	private static final long FLUSH_MILLIS = 5;
+	private static final long COMPACT_BYTES = 64L << 20;
+
+	private final KdTreeST<Value> tree = new KdTreeST<>();
+	private final Path dir;
+	private final Codec<Value> codec;
+	private final long compactBytes;
+	private final ScheduledExecutorService flusher;
+
+	// guarded by this: the tree, the pending batch and the log sequence numbers
+	private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+	private final DataOutputStream recordOut = new DataOutputStream(record);
+	private ByteArrayOutputStream batch = new ByteArrayOutputStream();
+	private long appended;
+	private boolean closed;
+	private IOException failure;
+
+	// guarded by flushLock: the open log and what it holds
+	private final Object flushLock = new Object();
+	private FileChannel log;
+	private long generation;
+	private long logBytes;
+	private long durable;
+
+	private final Object checkpointLock = new Object();
+
+	/**
+	 * Opens the symbol table stored in the directory, creating it if needed,
+	 * with the default flush interval and compaction threshold.
+	 */
+	public DurableKdTreeST(Path dir, Codec<Value> codec) throws IOException {
+		this(dir, codec, FLUSH_MILLIS, COMPACT_BYTES);
+	}
+
+	/**
+	 * Opens the symbol table stored in the directory, creating it if needed.
+	 * @param flushMillis ––> longest time a put() waits in memory before it is fsynced
+	 * @param compactBytes –> log size that triggers a snapshot
+	 */
+	public DurableKdTreeST(Path dir, Codec<Value> codec, long flushMillis, long compactBytes) throws IOException {
+		if (dir == null || codec == null) {
+			throw new NullPointerException();
+		}
+		if (flushMillis <= 0 || compactBytes <= 0) {
+			throw new IllegalArgumentException("flush interval and compaction threshold must be positive");
+		}
+		this.dir = dir;
+		this.codec = codec;
+		this.compactBytes = compactBytes;
+		Files.createDirectories(dir);
+		recover();
+
+		flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "kdtree-wal-flusher");
+			t.setDaemon(true);
+			return t;
+		});
+		flusher.scheduleWithFixedDelay(this::background, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Returns the number of points.
+	 */
+	public synchronized int size() {
+		return tree.size();
+	}
+
+	/**
+	 * Returns the status of the symbol table.
+	 */
+	public synchronized boolean isEmpty() {
+		return tree.isEmpty();
+	}
+
+	/**
+	 * Associates the value with the point; durable after the next flush.
+	 * @throws IllegalArgumentException if the encoded value makes the log record longer than 1 MB
+	 */
+	public synchronized void put(Point2D p, Value val) {
+		if (p == null || val == null) {
+			throw new NullPointerException();
+		}
+		append(PUT, p, val);
+		tree.put(p, val);
+	}
+
+	/**
+	 * Removes the point from the symbol table; durable after the next flush.
+	 */
+	public synchronized void delete(Point2D p) {
+		if (p == null) {
+			throw new NullPointerException();
+		}
+		append(DELETE, p, null);
+		tree.delete(p);
+	}
+
+	/**
+	 * Returns the value associated with a point.
+	 */
+	public synchronized Value get(Point2D p) {
+		return tree.get(p);
+	}
+
+	/**
+	 * Determines if Symbol Table has a point.
+	 */
+	public synchronized boolean contains(Point2D p) {
+		return tree.contains(p);
+	}
+
+	/**
+	 * Returns all the points that are inside the rectangle.
+	 */
+	public synchronized Iterable<Point2D> range(RectHV rect) {
+		return tree.range(rect);
+	}
+
+	/**
+	 * Returns the nearest neighbor to point p;
+	 * null if the Symbol Table is empty.
+	 */
+	public synchronized Point2D nearest(Point2D p) {
+		return tree.nearest(p);
+	}
+
+	/**
+	 * Returns the entry of the nearest neighbor to point p;
+	 * null if the Symbol Table is empty.
+	 */
+	public synchronized KdTreeST.Entry<Value> nearestEntry(Point2D p) {
+		return tree.nearestEntry(p);
+	}
+
+	/**
+	 * Blocks until every put() and delete() made so far is on disk.
+	 */
+	public void sync() throws IOException {
+		long target;
+		synchronized (this) {
+			checkOpen();
+			target = appended;
+		}
+		synchronized (flushLock) {
+			if (durable < target) {
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * Writes a snapshot of the whole tree and starts a new log,
+	 * so that recovery only replays what comes after it.
+	 */
+	public void checkpoint() throws IOException {
+		synchronized (checkpointLock) {
+			Iterable<KdTreeST.Entry<Value>> entries;
+			int count;
+			long next;
+			try {
+				synchronized (flushLock) {
+					byte[] pending;
+					long upTo;
+					synchronized (this) {
+						checkOpen();
+						entries = tree.entries();
+						count = tree.size();
+						pending = takeBatch();
+						upTo = appended;
+					}
+					write(pending);
+					log.close();
+					durable = upTo;
+					next = generation + 1;
+					log = openLog(next);
+					generation = next;
+					logBytes = 0;
+				}
+				writeSnapshot(next, count, entries);
+				deleteBefore(next);
+			} catch (IOException e) {
+				// the batch taken above may never have reached the log: refuse later writes rather than lose them silently
+				fail(e);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Flushes everything to disk and closes the log.
+	 */
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed) return;
+			closed = true;
+		}
+		flusher.shutdown();
+		try {
+			flusher.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (flushLock) {
+			try {
+				flush();
+			} finally {
+				log.close();
+			}
+		}
+	}
+
+	/* ––––––––––––––––––––––––– logging ––––––––––––––––––––––––– */
+
+	/**
+	 * Frames one record and adds it to the pending batch; caller holds this.
+	 */
+	private void append(byte op, Point2D p, Value val) {
+		checkOpen();
+		record.reset();
+		try {
+			recordOut.writeByte(op);
+			recordOut.writeDouble(p.x());
+			recordOut.writeDouble(p.y());
+			if (op == PUT) {
+				codec.write(recordOut, val);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (record.size() > MAX_RECORD) {
+			throw new IllegalArgumentException("record of " + record.size() + " bytes is longer than " + MAX_RECORD);
+		}
+		byte[] payload = record.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		ByteBuffer header = ByteBuffer.allocate(8).putInt(payload.length).putInt((int) crc.getValue());
+		batch.write(header.array(), 0, 8);
+		batch.write(payload, 0, payload.length);
+		appended++;
+	}
+
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("symbol table is closed");
+		}
+		if (failure != null) {
+			throw new UncheckedIOException("log is no longer writable", failure);
+		}
+	}
+
+	private byte[] takeBatch() {
+		byte[] pending = batch.toByteArray();
+		batch = new ByteArrayOutputStream();
+		return pending;
+	}
+
+	/**
+	 * Writes the pending batch and fsyncs it; caller holds flushLock.
+	 */
+	private void flush() throws IOException {
+		byte[] pending;
+		long upTo;
+		synchronized (this) {
+			pending = takeBatch();
+			upTo = appended;
+		}
+		try {
+			write(pending);
+		} catch (IOException e) {
+			fail(e);
+			throw e;
+		}
+		durable = upTo;
+	}
+
+	/**
+	 * Remembers the first write error; every later write and sync() reports it.
+	 */
+	private synchronized void fail(IOException e) {
+		if (failure == null) {
+			failure = e;
+		}
+	}
+
+	private void write(byte[] pending) throws IOException {
+		if (pending.length == 0) return;
+		ByteBuffer buffer = ByteBuffer.wrap(pending);
+		while (buffer.hasRemaining()) {
+			log.write(buffer);
+		}
+		log.force(false);
+		logBytes += pending.length;
+	}
+
+	/**
+	 * Periodic group commit, and compaction once the log is large enough.
+	 */
+	private void background() {
+		try {
+			boolean compact;
+			synchronized (flushLock) {
+				flush();
+				compact = logBytes >= compactBytes;
+			}
+			if (compact) {
+				checkpoint();
+			}
+		} catch (IOException e) {
+			// already remembered by flush() or checkpoint(); reported to the next caller
+		} catch (IllegalStateException e) {
+			// closed while compacting
+		} catch (RuntimeException e) {
+			// an exception escaping here would silently cancel the flusher
+			fail(new IOException("background flush failed", e));
+		}
+	}
+
+	/* ––––––––––––––––––––––––– snapshots and recovery ––––––––––––––––––––––––– */
+
+	private Path logFile(long gen) {
+		return dir.resolve("wal-" + gen);
+	}
+
+	private Path snapshotFile(long gen) {
+		return dir.resolve("snapshot-" + gen);
+	}
+
+	private FileChannel openLog(long gen) throws IOException {
+		FileChannel channel = FileChannel.open(logFile(gen), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		channel.position(channel.size());
+		return channel;
+	}
+
+	/**
+	 * Dumps the entries to a temporary file and renames it into place,
+	 * so a snapshot that exists is always complete.
+	 */
+	private void writeSnapshot(long gen, int count, Iterable<KdTreeST.Entry<Value>> entries) throws IOException {
+		Path tmp = dir.resolve("snapshot-" + gen + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeInt(count);
+			for (KdTreeST.Entry<Value> e : entries) {
+				out.writeDouble(e.point().x());
+				out.writeDouble(e.point().y());
+				codec.write(out, e.value());
+			}
+			out.flush();
+			channel.force(true);
+		}
+		Files.move(tmp, snapshotFile(gen), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Loads the newest snapshot, replays the logs written after it,
+	 * and reopens the newest log for appending.
+	 */
+	private void recover() throws IOException {
+		long snapshot = -1;
+		long newestLog = -1;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				if (name.endsWith(".tmp")) {
+					Files.delete(file);
+				} else if (name.startsWith("snapshot-")) {
+					snapshot = Math.max(snapshot, Long.parseLong(name.substring(9)));
+				} else if (name.startsWith("wal-")) {
+					newestLog = Math.max(newestLog, Long.parseLong(name.substring(4)));
+				}
+			}
+		}
+		if (snapshot >= 0) {
+			readSnapshot(snapshotFile(snapshot));
+		}
+		generation = Math.max(snapshot, 0);
+		for (long gen = generation; gen <= newestLog; gen++) {
+			if (!Files.exists(logFile(gen))) continue;
+			long valid = replay(logFile(gen));
+			generation = gen;
+			logBytes = valid;
+			try (FileChannel channel = FileChannel.open(logFile(gen), StandardOpenOption.WRITE)) {
+				channel.truncate(valid);
+			}
+		}
+		log = openLog(generation);
+		deleteBefore(Math.max(snapshot, 0));
+	}
+
+	private void readSnapshot(Path file) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != SNAPSHOT_MAGIC) {
+				throw new IOException("not a snapshot: " + file);
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				double x = in.readDouble();
+				double y = in.readDouble();
+				tree.put(new Point2D(x, y), codec.read(in));
+			}
+		}
+	}
+
+	/**
+	 * Applies the records of one log; returns the length of its valid prefix.
+	 */
+	private long replay(Path file) throws IOException {
+		long valid = 0;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			while (true) {
+				int length = in.readInt();
+				int checksum = in.readInt();
+				if (length <= 0 || length > MAX_RECORD) break;
+				byte[] payload = new byte[length];
+				in.readFully(payload);
+				CRC32 crc = new CRC32();
+				crc.update(payload);
+				if ((int) crc.getValue() != checksum) break;
+
+				DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+				byte op = record.readByte();
+				Point2D p = new Point2D(record.readDouble(), record.readDouble());
+				if (op == PUT) tree.put(p, codec.read(record));
+				else if (op == DELETE) tree.delete(p);
+				else break;
+				valid += 8 + length;
+			}
+		} catch (EOFException e) {
+			// torn record at the tail: everything before it is valid
+		}
+		return valid;
+	}
+
+	private void deleteBefore(long gen) throws IOException {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				long fileGen;
+				if (name.startsWith("snapshot-") && !name.endsWith(".tmp")) fileGen = Long.parseLong(name.substring(9));
+				else if (name.startsWith("wal-")) fileGen = Long.parseLong(name.substring(4));
+				else continue;
+				if (fileGen < gen) Files.delete(file);
+			}
+		}
+	}
+
+	/**
+	 * Client application: loads the points through the log, then reopens
+	 * the directory to show the time it takes to recover.
+	 */
+	public static void main(String[] args) throws IOException {
+		String filename = "src/points/input100K.txt";
+		Path dir = Files.createTempDirectory("kdtree-wal");
+		In in = new In(filename);
+
+		long starttime = System.currentTimeMillis();
+		try (DurableKdTreeST<Integer> kdtree = new DurableKdTreeST<>(dir, INTEGER)) {
+			for (int i = 0; !in.isEmpty(); i++) {
+				double x = in.readDouble();
+				double y = in.readDouble();
+				kdtree.put(new Point2D(x, y), i);
+			}
+			kdtree.sync();
+		}
+		StdOut.println("Logged in: " + (System.currentTimeMillis() - starttime) / 1000.0);
+
+		starttime = System.currentTimeMillis();
+		try (DurableKdTreeST<Integer> kdtree = new DurableKdTreeST<>(dir, INTEGER)) {
+			StdOut.println("Recovered " + kdtree.size() + " points in: " + (System.currentTimeMillis() - starttime) / 1000.0);
+		}
+	}
+}
@@ -0,0 +1,216 @@
+package a05;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.Queue;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * A connection to a KdTreeServer.
+ *
+ * The query methods send one request and wait for its answer. To pipeline, send any number
+ * of requests with the send methods, flush(), and receive() the answers in the order the
+ * requests were sent; don't mix the two while answers are still outstanding.
+ *
+ * @author Kevin Mora
+ */
+public class KdTreeClient implements AutoCloseable {
+	private final SocketChannel channel;
+	// out is kept in write mode, in in read mode
+	private ByteBuffer out = ByteBuffer.allocate(1 << 16);
+	private ByteBuffer in = ByteBuffer.allocate(1 << 16).flip();
+	private int sent, received;
+
+	/**
+	 * Connects to a server on this machine.
+	 */
+	public KdTreeClient(int port) throws IOException {
+		this(InetAddress.getLoopbackAddress().getHostAddress(), port);
+	}
+
+	/**
+	 * Connects to a server on the host.
+	 */
+	public KdTreeClient(String host, int port) throws IOException {
+		if (host == null) {
+			throw new NullPointerException();
+		}
+		channel = SocketChannel.open(new InetSocketAddress(host, port));
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+	}
+
+	/**
+	 * Returns the entry of the nearest neighbor to point p;
+	 * null if the server's tree is empty.
+	 */
+	public KdTreeST.Entry<Integer> nearest(Point2D p) throws IOException {
+		sendNearest(p);
+		for (KdTreeST.Entry<Integer> e : receive()) return e;
+		return null;
+	}
+
+	/**
+	 * Returns the entries of the k nearest neighbors to point p, closest first.
+	 */
+	public Iterable<KdTreeST.Entry<Integer>> nearest(Point2D p, int k) throws IOException {
+		sendNearest(p, k);
+		return receive();
+	}
+
+	/**
+	 * Returns all the entries whose points are inside the rectangle.
+	 */
+	public Iterable<KdTreeST.Entry<Integer>> range(RectHV rect) throws IOException {
+		sendRange(rect);
+		return receive();
+	}
+
+	/**
+	 * Returns all the entries whose points are within distance r of point p.
+	 */
+	public Iterable<KdTreeST.Entry<Integer>> within(Point2D p, double r) throws IOException {
+		sendWithin(p, r);
+		return receive();
+	}
+
+	/**
+	 * Queues a nearest() request, for receive().
+	 */
+	public void sendNearest(Point2D p) {
+		if (p == null) {
+			throw new NullPointerException();
+		}
+		frame(KdTreeServer.NEAREST, 16).putDouble(p.x()).putDouble(p.y());
+	}
+
+	/**
+	 * Queues a k nearest neighbors request, for receive().
+	 */
+	public void sendNearest(Point2D p, int k) {
+		if (p == null) {
+			throw new NullPointerException();
+		}
+		if (k < 1 || k > KdTreeServer.MAX_K) {
+			throw new IllegalArgumentException("k must be between 1 and " + KdTreeServer.MAX_K);
+		}
+		frame(KdTreeServer.NEAREST_K, 20).putDouble(p.x()).putDouble(p.y()).putInt(k);
+	}
+
+	/**
+	 * Queues a range() request, for receive().
+	 */
+	public void sendRange(RectHV rect) {
+		if (rect == null) {
+			throw new NullPointerException();
+		}
+		frame(KdTreeServer.RANGE, 32).putDouble(rect.xmin()).putDouble(rect.ymin()).putDouble(rect.xmax()).putDouble(rect.ymax());
+	}
+
+	/**
+	 * Queues a within() request, for receive().
+	 */
+	public void sendWithin(Point2D p, double r) {
+		if (p == null) {
+			throw new NullPointerException();
+		}
+		if (!(r >= 0)) {
+			throw new IllegalArgumentException("radius can't be negative");
+		}
+		frame(KdTreeServer.WITHIN, 24).putDouble(p.x()).putDouble(p.y()).putDouble(r);
+	}
+
+	/**
+	 * Starts a request frame of the given argument size in out, and returns out.
+	 */
+	private ByteBuffer frame(byte op, int size) {
+		if (out.remaining() < 9 + size) {
+			ByteBuffer larger = ByteBuffer.allocate(2 * out.capacity());
+			out.flip();
+			larger.put(out);
+			out = larger;
+		}
+		return out.putInt(5 + size).putInt(sent++).put(op);
+	}
+
+	/**
+	 * Sends every request not sent yet.
+	 */
+	public void flush() throws IOException {
+		out.flip();
+		while (out.hasRemaining()) channel.write(out);
+		out.clear();
+	}
+
+	/**
+	 * Returns the entries answering the oldest request not answered yet;
+	 * flushes first if requests are waiting to be sent.
+	 */
+	public Iterable<KdTreeST.Entry<Integer>> receive() throws IOException {
+		if (out.position() > 0) flush();
+		fill(4);
+		fill(4 + in.getInt(in.position()));
+		in.getInt();
+		int id = in.getInt();
+		byte status = in.get();
+		int count = in.getInt();
+		if (id != received++) {
+			throw new IOException("response " + id + " out of order");
+		}
+		if (status != KdTreeServer.OK) {
+			throw new IllegalArgumentException("request " + id + " rejected by the server");
+		}
+		Queue<KdTreeST.Entry<Integer>> entries = new Queue<>();
+		for (int i = 0; i < count; i++) {
+			Point2D p = new Point2D(in.getDouble(), in.getDouble());
+			entries.enqueue(new KdTreeST.Node<>(p, in.getInt(), null));
+		}
+		return entries;
+	}
+
+	/**
+	 * Reads until at least n bytes are waiting in in.
+	 */
+	private void fill(int n) throws IOException {
+		if (in.remaining() >= n) return;
+		if (in.capacity() < n) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(n, 2 * in.capacity()));
+			larger.put(in);
+			in = larger;
+		} else {
+			in.compact();
+		}
+		while (in.position() < n) {
+			if (channel.read(in) < 0) {
+				throw new EOFException("server closed the connection");
+			}
+		}
+		in.flip();
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Client application: one of each query against a server on this machine.
+	 * @param args ––> [port]
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+		try (KdTreeClient client = new KdTreeClient(port)) {
+			Point2D p = new Point2D(0.5, 0.5);
+			StdOut.println("nearest: " + client.nearest(p).point());
+			for (KdTreeST.Entry<Integer> e : client.nearest(p, 5)) StdOut.println("5 nearest: " + e.point() + " " + e.value());
+			for (KdTreeST.Entry<Integer> e : client.range(new RectHV(0.5, 0.5, 0.51, 0.51))) StdOut.println("range: " + e.point());
+			for (KdTreeST.Entry<Integer> e : client.within(p, 0.01)) StdOut.println("within: " + e.point());
+		}
+	}
+}
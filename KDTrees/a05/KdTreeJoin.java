@@ -0,0 +1,384 @@
+package a05;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.Queue;
+import edu.princeton.cs.algs4.ST;
+
+/**
+ * Dual-tree algorithms over two KdTreeST instances (or one tree against itself).
+ *
+ * Running one nearest() per point costs n independent root-to-leaf searches.
+ * A dual-tree algorithm walks both trees at once instead: the points of a subtree
+ * are split into the point stored in the node and the two child subtrees, so every
+ * pair of subtrees is visited once, and a whole pair is pruned as soon as the
+ * distance between the rectangles of its two nodes exceeds the current bound.
+ *
+ * The top levels of the first tree are handed to separate fork/join tasks;
+ * every task owns a disjoint set of query points, so no locking is needed
+ * on the per-point state.
+ *
+ * @author Kevin Mora
+ */
+public class KdTreeJoin {
+	// subtrees of the first tree above this depth run as separate fork/join tasks
+	private static final int PARALLEL_DEPTH = 6;
+
+	private KdTreeJoin() { }
+
+	/**
+	 * Returns the k nearest points in reference of every point in queries, closest first.
+	 * Joining a tree with itself reports each point as its own nearest neighbor.
+	 */
+	public static <Q, R> ST<Point2D, Iterable<Point2D>> allNearest(KdTreeST<Q> queries, KdTreeST<R> reference, int k) {
+		if (queries == null || reference == null) {
+			throw new NullPointerException();
+		}
+		if (k < 1) {
+			throw new IllegalArgumentException("k must be positive");
+		}
+		ST<Point2D, Iterable<Point2D>> result = new ST<>();
+		collectPoints(knn(queries, reference, k), result);
+		return result;
+	}
+
+	/**
+	 * Returns the entries of the k nearest points in reference of every point in queries,
+	 * closest first, so the values come straight from the nodes found by the join.
+	 */
+	public static <Q, R> ST<Point2D, Iterable<KdTreeST.Entry<R>>> allNearestEntries(KdTreeST<Q> queries, KdTreeST<R> reference, int k) {
+		if (queries == null || reference == null) {
+			throw new NullPointerException();
+		}
+		if (k < 1) {
+			throw new IllegalArgumentException("k must be positive");
+		}
+		ST<Point2D, Iterable<KdTreeST.Entry<R>>> result = new ST<>();
+		collectEntries(knn(queries, reference, k), result);
+		return result;
+	}
+
+	/**
+	 * Returns every pair (p, q) with p in a, q in b and p within distance r of q.
+	 * Joining a tree with itself reports each unordered pair of distinct points once.
+	 */
+	public static Iterable<Point2D[]> withinDistance(KdTreeST<?> a, KdTreeST<?> b, double r) {
+		if (a == null || b == null) {
+			throw new NullPointerException();
+		}
+		if (r < 0) {
+			throw new IllegalArgumentException("distance can't be negative");
+		}
+		ConcurrentLinkedQueue<Point2D[]> found = new ConcurrentLinkedQueue<>();
+		double bound = r * r;
+		join(new Join(a == b) {
+			double bound() {
+				return bound;
+			}
+
+			void pair(KdTreeST.Node<?> p, KdTreeST.Node<?> q) {
+				if (self && p == q) return;
+				if (p.point.distanceSquaredTo(q.point) <= bound) {
+					// pairs() meets each unordered pair of a self-join once, in either order
+					if (self && p.point.compareTo(q.point) > 0) found.add(new Point2D[] { q.point, p.point });
+					else found.add(new Point2D[] { p.point, q.point });
+				}
+			}
+		}, a, b);
+
+		Queue<Point2D[]> pairs = new Queue<>();
+		for (Point2D[] pair : found) {
+			pairs.enqueue(pair);
+		}
+		return pairs;
+	}
+
+	/**
+	 * Returns the closest pair (p, q) with p in a and q in b; null if there is none.
+	 * Joining a tree with itself returns the closest pair of distinct points.
+	 */
+	public static Point2D[] closestPair(KdTreeST<?> a, KdTreeST<?> b) {
+		if (a == null || b == null) {
+			throw new NullPointerException();
+		}
+		Closest closest = new Closest(a == b);
+		join(closest, a, b);
+		return closest.pair;
+	}
+
+	/**
+	 * Squared distance between the closest points of the rectangles of two nodes.
+	 */
+	private static double distanceSquared(KdTreeST.Node<?> a, KdTreeST.Node<?> b) {
+		double dx = Math.max(0, Math.max(a.xmin - b.xmax, b.xmin - a.xmax));
+		double dy = Math.max(0, Math.max(a.ymin - b.ymax, b.ymin - a.ymax));
+		return dx * dx + dy * dy;
+	}
+
+	/* ––––––––––––––––––––––––– all k nearest neighbors ––––––––––––––––––––––––– */
+
+	/**
+	 * A query node together with its k best candidates and the largest
+	 * k-th distance found anywhere in its subtree.
+	 */
+	private static class Query<Q, R> {
+		private final KdTreeST.Node<Q> node;
+		private final Query<Q, R> left;
+		private final Query<Q, R> right;
+		private final Neighbors<R> best;
+		private double bound = Double.POSITIVE_INFINITY;
+
+		Query(KdTreeST.Node<Q> node, Query<Q, R> left, Query<Q, R> right, int k) {
+			this.node = node;
+			this.left = left;
+			this.right = right;
+			this.best = new Neighbors<>(k);
+		}
+	}
+
+	private static <Q, R> Query<Q, R> mirror(KdTreeST.Node<Q> node, int k) {
+		if (node == null) return null;
+		return new Query<>(node, mirror(node.left, k), mirror(node.right, k), k);
+	}
+
+	/**
+	 * Runs the join and returns the mirrored query tree holding the results.
+	 */
+	private static <Q, R> Query<Q, R> knn(KdTreeST<Q> queries, KdTreeST<R> reference, int k) {
+		// no more than reference.size() neighbors can be found, so don't size the heaps past them;
+		// against an empty reference every query point just gets an empty list
+		Query<Q, R> root = mirror(queries.root(), Math.min(k, reference.size()));
+		if (root != null && reference.root() != null) {
+			ForkJoinPool.commonPool().invoke(new Knn<>(root, reference.root(), 0));
+		}
+		return root;
+	}
+
+	private static <Q, R> void collectPoints(Query<Q, R> q, ST<Point2D, Iterable<Point2D>> result) {
+		if (q == null) return;
+		result.put(q.node.point, q.best.points());
+		collectPoints(q.left, result);
+		collectPoints(q.right, result);
+	}
+
+	private static <Q, R> void collectEntries(Query<Q, R> q, ST<Point2D, Iterable<KdTreeST.Entry<R>>> result) {
+		if (q == null) return;
+		result.put(q.node.point, q.best.entries());
+		collectEntries(q.left, result);
+		collectEntries(q.right, result);
+	}
+
+	/**
+	 * Runs subtree(q, r) as a fork/join task.
+	 */
+	private static class Knn<Q, R> extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		// fork/join tasks are never serialized
+		private final transient Query<Q, R> q;
+		private final transient KdTreeST.Node<R> r;
+		private final int depth;
+
+		Knn(Query<Q, R> q, KdTreeST.Node<R> r, int depth) {
+			this.q = q;
+			this.r = r;
+			this.depth = depth;
+		}
+
+		protected void compute() {
+			subtree(q, r, depth);
+		}
+	}
+
+	/**
+	 * Every point below q against every point below r: the point in q against
+	 * the subtree r, then each child subtree of q against the subtree r.
+	 */
+	private static <Q, R> void knn(Query<Q, R> q, KdTreeST.Node<R> r, int depth) {
+		if (q == null || r == null || distanceSquared(q.node, r) > q.bound) return;
+		nearest(q, r);
+		if (depth < PARALLEL_DEPTH && q.left != null && q.right != null) {
+			ForkJoinTask.invokeAll(new Knn<>(q.left, r, depth + 1), new Knn<>(q.right, r, depth + 1));
+		} else {
+			subtree(q.left, r, depth + 1);
+			subtree(q.right, r, depth + 1);
+		}
+		tighten(q);
+	}
+
+	/**
+	 * Every point below q against every point below r, descending both trees:
+	 * the point in r against the subtree q, then the subtree q against both
+	 * children of r, the closer child first.
+	 */
+	private static <Q, R> void subtree(Query<Q, R> q, KdTreeST.Node<R> r, int depth) {
+		if (q == null || r == null) return;
+		reverse(q, r);
+		if (r.left != null && r.right != null
+				&& distanceSquared(q.node, r.right) < distanceSquared(q.node, r.left)) {
+			knn(q, r.right, depth);
+			knn(q, r.left, depth);
+		} else {
+			knn(q, r.left, depth);
+			knn(q, r.right, depth);
+		}
+	}
+
+	/**
+	 * Single-tree search for the point in q over the subtree r.
+	 */
+	private static <Q, R> void nearest(Query<Q, R> q, KdTreeST.Node<R> r) {
+		Point2D p = q.node.point;
+		if (r == null || r.distanceSquaredTo(p) > q.best.kth()) return;
+		q.best.offer(r, p.distanceSquaredTo(r.point));
+		if (r.left != null && r.left.contains(p)) {
+			nearest(q, r.left);
+			nearest(q, r.right);
+		} else {
+			nearest(q, r.right);
+			nearest(q, r.left);
+		}
+	}
+
+	/**
+	 * The point in r offered to every query point of the subtree q.
+	 */
+	private static <Q, R> void reverse(Query<Q, R> q, KdTreeST.Node<R> r) {
+		if (q == null || q.node.distanceSquaredTo(r.point) > q.bound) return;
+		q.best.offer(r, q.node.point.distanceSquaredTo(r.point));
+		reverse(q.left, r);
+		reverse(q.right, r);
+		tighten(q);
+	}
+
+	private static <Q, R> void tighten(Query<Q, R> q) {
+		double bound = q.best.kth();
+		if (q.left != null) bound = Math.max(bound, q.left.bound);
+		if (q.right != null) bound = Math.max(bound, q.right.bound);
+		q.bound = bound;
+	}
+
+	/* ––––––––––––––––––––– symmetric joins (distance, closest) ––––––––––––––––––––– */
+
+	/**
+	 * A symmetric join: pair() sees every candidate pair whose nodes are
+	 * not further apart than bound().
+	 */
+	private abstract static class Join {
+		final boolean self;
+
+		Join(boolean self) {
+			this.self = self;
+		}
+
+		abstract double bound();
+
+		abstract void pair(KdTreeST.Node<?> p, KdTreeST.Node<?> q);
+	}
+
+	private static class Closest extends Join {
+		private volatile double best = Double.POSITIVE_INFINITY;
+		private Point2D[] pair;
+
+		Closest(boolean self) {
+			super(self);
+		}
+
+		double bound() {
+			return best;
+		}
+
+		void pair(KdTreeST.Node<?> p, KdTreeST.Node<?> q) {
+			if (self && p == q) return;
+			double d = p.point.distanceSquaredTo(q.point);
+			if (d < best) {
+				synchronized (this) {
+					if (d < best) {
+						best = d;
+						pair = new Point2D[] { p.point, q.point };
+					}
+				}
+			}
+		}
+	}
+
+	private static void join(Join join, KdTreeST<?> a, KdTreeST<?> b) {
+		if (a.root() == null || b.root() == null) return;
+		ForkJoinPool.commonPool().invoke(new Pairs(join, a.root(), b.root(), 0));
+	}
+
+	/**
+	 * Runs pairs(join, a, b) as a fork/join task.
+	 */
+	private static class Pairs extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		// fork/join tasks are never serialized
+		private final transient Join join;
+		private final transient KdTreeST.Node<?> a;
+		private final transient KdTreeST.Node<?> b;
+		private final int depth;
+
+		Pairs(Join join, KdTreeST.Node<?> a, KdTreeST.Node<?> b, int depth) {
+			this.join = join;
+			this.a = a;
+			this.b = b;
+			this.depth = depth;
+		}
+
+		protected void compute() {
+			pairs(join, a, b, depth);
+		}
+	}
+
+	/**
+	 * Every point below a against every point below b: the two node points,
+	 * each node point against the other side's child subtrees, and the four
+	 * pairs of child subtrees. When a and b are the same node (a self-join),
+	 * the mirror images, child subtrees against the node point and right
+	 * against left, are skipped, so each unordered pair is met once.
+	 */
+	private static void pairs(Join join, KdTreeST.Node<?> a, KdTreeST.Node<?> b, int depth) {
+		if (a == null || b == null || distanceSquared(a, b) > join.bound()) return;
+		boolean same = a == b;
+		join.pair(a, b);
+		pointToTree(join, a, b.left);
+		pointToTree(join, a, b.right);
+		if (!same) {
+			treeToPoint(join, a.left, b);
+			treeToPoint(join, a.right, b);
+		}
+		if (depth < PARALLEL_DEPTH) {
+			if (same) {
+				ForkJoinTask.invokeAll(
+						new Pairs(join, a.left, b.left, depth + 1), new Pairs(join, a.left, b.right, depth + 1),
+						new Pairs(join, a.right, b.right, depth + 1));
+			} else {
+				ForkJoinTask.invokeAll(
+						new Pairs(join, a.left, b.left, depth + 1), new Pairs(join, a.left, b.right, depth + 1),
+						new Pairs(join, a.right, b.left, depth + 1), new Pairs(join, a.right, b.right, depth + 1));
+			}
+		} else {
+			pairs(join, a.left, b.left, depth + 1);
+			pairs(join, a.left, b.right, depth + 1);
+			if (!same) pairs(join, a.right, b.left, depth + 1);
+			pairs(join, a.right, b.right, depth + 1);
+		}
+	}
+
+	private static void pointToTree(Join join, KdTreeST.Node<?> a, KdTreeST.Node<?> b) {
+		if (b == null || b.distanceSquaredTo(a.point) > join.bound()) return;
+		join.pair(a, b);
+		pointToTree(join, a, b.left);
+		pointToTree(join, a, b.right);
+	}
+
+	private static void treeToPoint(Join join, KdTreeST.Node<?> a, KdTreeST.Node<?> b) {
+		if (a == null || a.distanceSquaredTo(b.point) > join.bound()) return;
+		join.pair(a, b);
+		treeToPoint(join, a.left, b);
+		treeToPoint(join, a.right, b);
+	}
+}
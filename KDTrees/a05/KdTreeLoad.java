@@ -0,0 +1,115 @@
+package a05;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Load generator for a KdTreeServer on this machine.
+ *
+ * Every connection runs on its own thread and keeps sending batches of depth pipelined
+ * nearest() requests; the latency of a request runs from the flush of its batch to the
+ * receipt of its answer. Reports the throughput and the 50th, 99th and 99.9th percentile
+ * latencies over all the connections.
+ *
+ * @author Kevin Mora
+ */
+public class KdTreeLoad {
+
+	private KdTreeLoad() { }
+
+	/**
+	 * One connection: the latencies of every request answered before the deadline, in nanoseconds.
+	 */
+	private static long[] run(int port, int depth, long deadline) throws IOException {
+		long[] latencies = new long[1 << 16];
+		int n = 0;
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		try (KdTreeClient client = new KdTreeClient(port)) {
+			while (System.nanoTime() < deadline) {
+				for (int i = 0; i < depth; i++) {
+					client.sendNearest(new Point2D(random.nextDouble(), random.nextDouble()));
+				}
+				long start = System.nanoTime();
+				client.flush();
+				for (int i = 0; i < depth; i++) {
+					client.receive();
+					if (n == latencies.length) latencies = Arrays.copyOf(latencies, 2 * n);
+					latencies[n++] = System.nanoTime() - start;
+				}
+			}
+		}
+		return Arrays.copyOf(latencies, n);
+	}
+
+	private static double percentile(long[] sorted, double p) {
+		if (sorted.length == 0) return Double.NaN;
+		return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1000.0;
+	}
+
+	/**
+	 * Client application: without a port, starts a server on input100K.txt in this process first.
+	 * @param args ––> [port] [connections] [depth] [seconds]
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int connections = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		int depth = args.length > 2 ? Integer.parseInt(args[2]) : 32;
+		int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+		KdTreeServer server = null;
+		int port;
+		if (args.length > 0) {
+			port = Integer.parseInt(args[0]);
+		} else {
+			server = new KdTreeServer(KdTreeServer.load("src/points/input100K.txt"), 0);
+			port = server.port();
+			KdTreeServer serving = server;
+			Thread thread = new Thread(() -> {
+				try {
+					serving.serve();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}, "kdtree-server");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		long[][] latencies = new long[connections][];
+		Thread[] threads = new Thread[connections];
+		long deadline = System.nanoTime() + seconds * 1000000000L;
+		for (int c = 0; c < connections; c++) {
+			int connection = c;
+			threads[c] = new Thread(() -> {
+				try {
+					latencies[connection] = run(port, depth, deadline);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			threads[c].start();
+		}
+		for (Thread thread : threads) thread.join();
+		if (server != null) server.close();
+
+		int total = 0;
+		for (long[] l : latencies) total += l == null ? 0 : l.length;
+		long[] all = new long[total];
+		int i = 0;
+		for (long[] l : latencies) {
+			if (l == null) continue;
+			System.arraycopy(l, 0, all, i, l.length);
+			i += l.length;
+		}
+		Arrays.sort(all);
+		StdOut.println(connections + " connections, " + depth + " requests in flight each");
+		StdOut.println("Requests per second: " + total / (double) seconds);
+		StdOut.println("p50: " + percentile(all, 0.50) + " µs");
+		StdOut.println("p99: " + percentile(all, 0.99) + " µs");
+		StdOut.println("p999: " + percentile(all, 0.999) + " µs");
+	}
+}
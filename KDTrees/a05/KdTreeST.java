@@ -1,5 +1,10 @@
 package a05;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
 import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.Point2D;
 import edu.princeton.cs.algs4.Queue;
@@ -27,25 +32,87 @@ import edu.princeton.cs.algs4.StdRandom;
  * to identify the points in the nodes, using the x- and y-coordinates of the points as keys 
  * in strictly alternating sequence, starting with the x-coordinates.
  * 
+ * Trees made by balanced() may choose each node's coordinate by a SplitPolicy instead; 
+ * every node keeps the coordinate it splits on, so the queries work the same either way.
+ * 
  * @author Kevin Mora
  * @author Nathan Clark
  * @author Dawood Ahmed
  */
 public class KdTreeST<Value> {
 	private int size;
-	private Node root;
-	
-	private class Node {
-		private Point2D point;
-		private Value val;
-		private RectHV rect;
-		private Node left;
-		private Node right;
+	private Node<Value> root;
+	private final SplitPolicy policy;
+	
+	/**
+	 * How balanced(), and the rebuilds in refit(), choose the splitting line of each node.
+	 */
+	public enum SplitPolicy {
+		/** x, then y, then x..., through the median point: the classic 2d-tree, as put() builds it. */
+		ALTERNATE,
+		/** the coordinate in which the subtree's points are most spread out, through the median point. */
+		MEDIAN,
+		/** the coordinate of maximum spread, through the first point at or past the middle of the spread. */
+		SLIDING_MIDPOINT
+	}
+	
+	/**
+	 * A point together with its value, handed out straight from the node
+	 * found by a query so the client doesn't need a second get().
+	 */
+	public interface Entry<Value> {
+		Point2D point();
+		Value value();
+	}
+	
+	static class Node<Value> implements Entry<Value> {
+		Point2D point;
+		Value val;
+		// the node's rectangle, as plain coordinates so that refit() can move it in place
+		double xmin, ymin, xmax, ymax;
+		boolean vertical;
+		Node<Value> left;
+		Node<Value> right;
 
-		public Node(Point2D point, Value val, RectHV rect) {
+		Node(Point2D point, Value val, RectHV rect) {
 			this.point = point;
 			this.val = val;
-			this.rect = rect;
+			if (rect != null) frame(rect.xmin(), rect.ymin(), rect.xmax(), rect.ymax());
+		}
+
+		void frame(double xmin, double ymin, double xmax, double ymax) {
+			this.xmin = xmin;
+			this.ymin = ymin;
+			this.xmax = xmax;
+			this.ymax = ymax;
+		}
+
+		/**
+		 * Same tests as RectHV's, against the node's rectangle.
+		 */
+		boolean contains(Point2D p) {
+			return p.x() >= xmin && p.x() <= xmax && p.y() >= ymin && p.y() <= ymax;
+		}
+
+		boolean intersects(RectHV rect) {
+			return xmax >= rect.xmin() && ymax >= rect.ymin() && rect.xmax() >= xmin && rect.ymax() >= ymin;
+		}
+
+		double distanceSquaredTo(Point2D p) {
+			double dx = 0.0, dy = 0.0;
+			if      (p.x() < xmin) dx = p.x() - xmin;
+			else if (p.x() > xmax) dx = p.x() - xmax;
+			if      (p.y() < ymin) dy = p.y() - ymin;
+			else if (p.y() > ymax) dy = p.y() - ymax;
+			return dx * dx + dy * dy;
+		}
+
+		public Point2D point() {
+			return point;
+		}
+
+		public Value value() {
+			return val;
 		}
 	}
 
@@ -53,8 +120,163 @@ public class KdTreeST<Value> {
 	 * Creates an empty symbol table of points.
 	 */
 	public KdTreeST() {
+		this(SplitPolicy.ALTERNATE);
+	}
+	
+	private KdTreeST(SplitPolicy policy) {
 		size = 0;
 		root = null;
+		this.policy = policy;
+	}
+	
+	/**
+	 * Builds a balanced 2d-tree from the entries; later entries for the same point win.
+	 * 
+	 * Every node is the median of its subtree in the node's coordinate, so the height is 
+	 * ~lg N whatever order the points come in. Points equal to the median in that coordinate 
+	 * go to the right, as they would with put(), and each median is found by quickselect, 
+	 * so the build takes time proportional to N log N.
+	 */
+	public static <Value> KdTreeST<Value> balanced(Iterable<? extends Entry<Value>> entries) {
+		return balanced(entries, SplitPolicy.ALTERNATE);
+	}
+	
+	/**
+	 * Builds a 2d-tree from the entries, splitting every node as the policy says; 
+	 * later entries for the same point win. refit() rebuilds with the same policy.
+	 * 
+	 * Choosing the coordinate of maximum spread keeps the rectangles from turning into 
+	 * thin slivers on elongated or clustered points, so nearest() prunes more of them. 
+	 * SLIDING_MIDPOINT halves the rectangles rather than the points, which gives squarer 
+	 * rectangles still, but the tree is no longer guaranteed to be ~lg N high.
+	 */
+	public static <Value> KdTreeST<Value> balanced(Iterable<? extends Entry<Value>> entries, SplitPolicy policy) {
+		if (entries == null || policy == null) {
+			throw new NullPointerException();
+		}
+		HashMap<Point2D, Integer> seen = new HashMap<>();
+		ArrayList<Node<Value>> nodes = new ArrayList<>();
+		for (Entry<Value> e : entries) {
+			if (e.point() == null || e.value() == null) {
+				throw new NullPointerException();
+			}
+			Integer i = seen.putIfAbsent(e.point(), nodes.size());
+			if (i == null) nodes.add(new Node<>(e.point(), e.value(), null));
+			else nodes.get(i).val = e.value();
+		}
+		
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Node<Value>[] a = nodes.toArray(new Node[0]);
+		KdTreeST<Value> tree = new KdTreeST<>(policy);
+		tree.root = tree.build(a, 0, a.length, true);
+		tree.reframe(tree.root);
+		tree.size = a.length;
+		return tree;
+	}
+	
+	/**
+	 * Private helper method for balanced(); links the splitting point of a[lo, hi) above 
+	 * both halves. vertical is only followed by ALTERNATE; the rectangles are left to reframe().
+	 */
+	private Node<Value> build(Node<Value>[] a, int lo, int hi, boolean vertical) {
+		if (lo >= hi) {
+			return null;
+		}
+		if (policy != SplitPolicy.ALTERNATE) {
+			vertical = widerInX(a, lo, hi);
+		}
+		int mid = policy == SplitPolicy.SLIDING_MIDPOINT ? midpoint(a, lo, hi, vertical) : median(a, lo, hi, vertical);
+		Node<Value> node = a[mid];
+		node.vertical = vertical;
+		node.left = build(a, lo, mid, !vertical);
+		node.right = build(a, mid + 1, hi, !vertical);
+		return node;
+	}
+	
+	/**
+	 * Rearranges a[lo, hi) around its median in one coordinate and returns the median's index; 
+	 * everything before it is strictly smaller, everything after it is at least as large.
+	 */
+	private static <Value> int median(Node<Value>[] a, int lo, int hi, boolean vertical) {
+		int k = lo + (hi - lo) / 2;
+		int l = lo, h = hi - 1;
+		while (l < h) {
+			swap(a, l, ThreadLocalRandom.current().nextInt(l, h + 1));
+			double pivot = coordinate(a[l], vertical);
+			int i = l, j = h + 1;
+			while (true) {
+				while (coordinate(a[++i], vertical) < pivot) if (i == h) break;
+				while (pivot < coordinate(a[--j], vertical)) if (j == l) break;
+				if (i >= j) break;
+				swap(a, i, j);
+			}
+			swap(a, l, j);
+			if (j > k) h = j - 1;
+			else if (j < k) l = j + 1;
+			else break;
+		}
+		// move the ties of the median from its left to just before it
+		double m = coordinate(a[k], vertical);
+		int mid = k;
+		for (int i = k - 1; i >= lo; i--) {
+			if (coordinate(a[i], vertical) == m) swap(a, i, --mid);
+		}
+		return mid;
+	}
+	
+	/**
+	 * Rearranges a[lo, hi) around the point closest to the middle of its spread in one coordinate, 
+	 * from above, and returns that point's index; everything before it is strictly smaller, 
+	 * everything after it at least as large. The line slides from the middle to a point, 
+	 * so the left side is never empty while the coordinate has any spread at all.
+	 */
+	private static <Value> int midpoint(Node<Value>[] a, int lo, int hi, boolean vertical) {
+		double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+		for (int i = lo; i < hi; i++) {
+			min = Math.min(min, coordinate(a[i], vertical));
+			max = Math.max(max, coordinate(a[i], vertical));
+		}
+		double middle = min + (max - min) / 2, split = max;
+		for (int i = lo; i < hi; i++) {
+			double c = coordinate(a[i], vertical);
+			if (c >= middle && c < split) split = c;
+		}
+		int mid = lo;
+		for (int i = lo; i < hi; i++) {
+			if (coordinate(a[i], vertical) < split) swap(a, i, mid++);
+		}
+		for (int i = mid; i < hi; i++) {
+			if (coordinate(a[i], vertical) == split) {
+				swap(a, i, mid);
+				break;
+			}
+		}
+		return mid;
+	}
+	
+	/**
+	 * Are the points of a[lo, hi) at least as spread out in x as in y?
+	 */
+	private static <Value> boolean widerInX(Node<Value>[] a, int lo, int hi) {
+		double xmin = Double.POSITIVE_INFINITY, xmax = Double.NEGATIVE_INFINITY;
+		double ymin = Double.POSITIVE_INFINITY, ymax = Double.NEGATIVE_INFINITY;
+		for (int i = lo; i < hi; i++) {
+			xmin = Math.min(xmin, a[i].point.x());
+			xmax = Math.max(xmax, a[i].point.x());
+			ymin = Math.min(ymin, a[i].point.y());
+			ymax = Math.max(ymax, a[i].point.y());
+		}
+		return xmax - xmin >= ymax - ymin;
+	}
+	
+	private static <Value> double coordinate(Node<Value> node, boolean vertical) {
+		return vertical ? node.point.x() : node.point.y();
+	}
+	
+	private static <Value> void swap(Node<Value>[] a, int i, int j) {
+		Node<Value> t = a[i];
+		a[i] = a[j];
+		a[j] = t;
 	}
 	
 	/**
@@ -89,18 +311,21 @@ public class KdTreeST<Value> {
 	 * (if the point to be inserted has a smaller x-coordinate than the point at the root, go left; otherwise go right); 
 	 * then at the next level, we use the y-coordinate (if the point to be inserted has a smaller y-coordinate than 
 	 * the point in the node, go left; otherwise go right); then at the next level the x-coordinate, and so forth.
+	 * Below a node built by a SplitPolicy, the levels alternate from that node's coordinate.
 	 */
-	private Node put(Node parent, Node node, Point2D p, Value val, boolean vertical) {
+	private Node<Value> put(Node<Value> parent, Node<Value> node, Point2D p, Value val, boolean vertical) {
 		if (node == null) {
 			size++;
-			return new Node(p, val, rectCreator(parent, p, vertical));
+			Node<Value> leaf = new Node<>(p, val, rectCreator(parent, p, vertical));
+			leaf.vertical = vertical;
+			return leaf;
 		}
-		if (compareXY(node, p, vertical) < 0)
-			node.left = put(node, node.left, p, val, !vertical);
+		if (compareXY(node, p, node.vertical) < 0)
+			node.left = put(node, node.left, p, val, !node.vertical);
 		else if (node.point.equals(p))
 			node.val = val;
 		else
-			node.right = put(node, node.right, p, val, !vertical);
+			node.right = put(node, node.right, p, val, !node.vertical);
 		return node;
 	}
 	
@@ -114,6 +339,172 @@ public class KdTreeST<Value> {
 		root = put(null, root, point, val, true);
 	}
 
+	/**
+	 * Removes the point (and its value) from the Symbol Table.
+	 * 
+	 * A 2d-tree node can't simply be unlinked, because its children were placed by its 
+	 * splitting line; the subtree below it is detached instead and its points are put back 
+	 * in level-order, which costs time proportional to the size of that subtree.
+	 */
+	public void delete(Point2D p) {
+		if (p == null) {
+			throw new NullPointerException();
+		}
+		Queue<Node<Value>> orphans = new Queue<>();
+		root = delete(root, p, orphans);
+		for (Node<Value> orphan : orphans) {
+			root = put(null, root, orphan.point, orphan.val, true);
+		}
+	}
+
+	/**
+	 * Private helper method for delete().
+	 */
+	private Node<Value> delete(Node<Value> node, Point2D p, Queue<Node<Value>> orphans) {
+		if (node == null) {
+			return null;
+		}
+		if (compareXY(node, p, node.vertical) < 0)
+			node.left = delete(node.left, p, orphans);
+		else if (node.point.equals(p)) {
+			size--;
+			levelOrder(node.left, orphans);
+			levelOrder(node.right, orphans);
+			size -= orphans.size();
+			return null;
+		}
+		else
+			node.right = delete(node.right, p, orphans);
+		return node;
+	}
+
+	/**
+	 * Moves every point to position(value) in place, for points that only drift a little 
+	 * between calls (the boids from one frame to the next): the tree keeps its shape and 
+	 * the whole refit is one O(N) pass instead of N puts into a new tree.
+	 * 
+	 * A node stays where it is as long as its new point is on the same side of every 
+	 * splitting line above it. A subtree holding a point that crossed one of its own lines 
+	 * is rebuilt balanced, in place, if its points still fit the subtree's rectangle; 
+	 * otherwise the problem is handed up to the parent. The whole tree is rebuilt once 
+	 * its height passes 3 lg N. Rectangles are then recomputed from the new splitting lines.
+	 */
+	public void refit(Function<? super Value, Point2D> position) {
+		if (position == null) {
+			throw new NullPointerException();
+		}
+		if (root == null) {
+			return;
+		}
+		double inf = Double.POSITIVE_INFINITY;
+		double[][] boxes = new double[height(root) + 1][4];
+		if (refit(root, position, -inf, -inf, inf, inf, boxes, 0)) {
+			root = rebuild(root, true);
+		}
+		if (reframe(root) > 3 * (32 - Integer.numberOfLeadingZeros(size))) {
+			root = rebuild(root, true);
+			reframe(root);
+		}
+	}
+	
+	/**
+	 * Private helper method for refit(). Moves the points of the subtree, leaves its bounding box 
+	 * in boxes[depth], rebuilds the child subtrees that can be fixed on their own, and returns 
+	 * whether a point is still outside its region [xlo, xhi) x [ylo, yhi).
+	 */
+	private boolean refit(Node<Value> node, Function<? super Value, Point2D> position,
+			double xlo, double ylo, double xhi, double yhi, double[][] boxes, int depth) {
+		Point2D p = position.apply(node.val);
+		if (p == null) {
+			throw new NullPointerException();
+		}
+		node.point = p;
+		double x = p.x(), y = p.y();
+		double[] box = boxes[depth];
+		box[0] = x; box[1] = y; box[2] = x; box[3] = y;
+		boolean misplaced = x < xlo || x >= xhi || y < ylo || y >= yhi;
+		boolean vertical = node.vertical;
+		
+		if (node.left != null) {
+			double cxhi = vertical ? x : xhi, cyhi = vertical ? yhi : y;
+			if (refit(node.left, position, xlo, ylo, cxhi, cyhi, boxes, depth + 1)) {
+				if (fits(boxes[depth + 1], xlo, ylo, cxhi, cyhi)) node.left = rebuild(node.left, !vertical);
+				else misplaced = true;
+			}
+			union(box, boxes[depth + 1]);
+		}
+		if (node.right != null) {
+			double cxlo = vertical ? x : xlo, cylo = vertical ? ylo : y;
+			if (refit(node.right, position, cxlo, cylo, xhi, yhi, boxes, depth + 1)) {
+				if (fits(boxes[depth + 1], cxlo, cylo, xhi, yhi)) node.right = rebuild(node.right, !vertical);
+				else misplaced = true;
+			}
+			union(box, boxes[depth + 1]);
+		}
+		return misplaced;
+	}
+	
+	private static boolean fits(double[] box, double xlo, double ylo, double xhi, double yhi) {
+		return box[0] >= xlo && box[1] >= ylo && box[2] < xhi && box[3] < yhi;
+	}
+	
+	private static void union(double[] box, double[] that) {
+		box[0] = Math.min(box[0], that[0]);
+		box[1] = Math.min(box[1], that[1]);
+		box[2] = Math.max(box[2], that[2]);
+		box[3] = Math.max(box[3], that[3]);
+	}
+	
+	/**
+	 * Relinks the nodes of a subtree into a balanced subtree; the rectangles are left to reframe().
+	 */
+	private Node<Value> rebuild(Node<Value> node, boolean vertical) {
+		Queue<Node<Value>> nodes = new Queue<>();
+		levelOrder(node, nodes);
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Node<Value>[] a = new Node[nodes.size()];
+		int i = 0;
+		for (Node<Value> n : nodes) {
+			n.left = null;
+			n.right = null;
+			a[i++] = n;
+		}
+		return build(a, 0, a.length, vertical);
+	}
+	
+	/**
+	 * Recomputes the rectangles top-down from the side of the parent each node hangs on 
+	 * (rather than from where its point is, as put() can); returns the height. The 
+	 * rectangles are overwritten in place, so refit() allocates nothing per frame here.
+	 */
+	private int reframe(Node<Value> root) {
+		return reframe(root, - Double.MAX_VALUE, - Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
+	}
+	
+	private int reframe(Node<Value> node, double xmin, double ymin, double xmax, double ymax) {
+		if (node == null) {
+			return 0;
+		}
+		node.frame(xmin, ymin, xmax, ymax);
+		double x = node.point.x(), y = node.point.y();
+		int left, right;
+		if (node.vertical) {
+			left = reframe(node.left, xmin, ymin, x, ymax);
+			right = reframe(node.right, x, ymin, xmax, ymax);
+		} else {
+			left = reframe(node.left, xmin, ymin, xmax, y);
+			right = reframe(node.right, xmin, y, xmax, ymax);
+		}
+		return 1 + Math.max(left, right);
+	}
+	
+	private int height(Node<Value> node) {
+		if (node == null) {
+			return 0;
+		}
+		return 1 + Math.max(height(node.left), height(node.right));
+	}
+	
 	/**
 	 * Returns the value associated with a point.
 	 */
@@ -121,22 +512,59 @@ public class KdTreeST<Value> {
 		if (p == null) {
 			throw new NullPointerException("arguments can't be null");
 		}
-		return get(root, p, true);
+		return get(root, p);
 	}
 
 	/**
 	 * Private helper method for get().
 	 */
-	private Value get(Node node, Point2D p, boolean isVertical) {
+	private Value get(Node<Value> node, Point2D p) {
 		if (node == null) {
 			return null;
 		}
-		if (compareXY(node, p, isVertical) < 0)
-			return get(node.left, p, !isVertical);
+		if (compareXY(node, p, node.vertical) < 0)
+			return get(node.left, p);
 		else if (node.point.equals(p))
 			return node.val;
 		else
-			return get(node.right, p, !isVertical);
+			return get(node.right, p);
+	}
+	
+	/**
+	 * Returns the root node; used by the dual-tree algorithms in KdTreeJoin.
+	 */
+	Node<Value> root() {
+		return root;
+	}
+	
+	/**
+	 * Returns all the entries in the Symbol Table, in the same level-order as points().
+	 */
+	public Iterable<Entry<Value>> entries(){
+		Queue<Entry<Value>> queue = new Queue<>();
+		levelOrder(root, queue);
+		return queue;
+	}
+	
+	/**
+	 * Adds the nodes of a subtree to the queue in level-order.
+	 */
+	private void levelOrder(Node<Value> node, Queue<? super Node<Value>> queue) {
+		if (node == null) {
+			return;
+		}
+		Queue<Node<Value>> nodeQ = new Queue<>();
+		nodeQ.enqueue(node);
+		while(!nodeQ.isEmpty()){
+			Node<Value> temp = nodeQ.dequeue();
+			queue.enqueue(temp);
+			if (temp.left != null) {
+				nodeQ.enqueue(temp.left);
+			}
+			if (temp.right != null) {
+				nodeQ.enqueue(temp.right);
+			}
+		}
 	}
 	
 	/**
@@ -148,10 +576,10 @@ public class KdTreeST<Value> {
 			return queue;
 		}
 		
-		Queue<Node> nodeQ = new Queue<>();
+		Queue<Node<Value>> nodeQ = new Queue<>();
 		nodeQ.enqueue(root);
 		while(!nodeQ.isEmpty()){
-			Node temp = nodeQ.dequeue();
+			Node<Value> temp = nodeQ.dequeue();
 			queue.enqueue(temp.point);
 			if (temp.left != null) {
 				nodeQ.enqueue(temp.left);
@@ -175,8 +603,8 @@ public class KdTreeST<Value> {
 		return rectPoints;
 	}
 	
-	private void range(RectHV rect, Queue<Point2D> rectPoints, Node node) {
-		if (node == null || !rect.intersects(node.rect)) return;
+	private void range(RectHV rect, Queue<Point2D> rectPoints, Node<Value> node) {
+		if (node == null || !node.intersects(rect)) return;
 		if (rect.contains(node.point)) {
 			rectPoints.enqueue(node.point);
 		}
@@ -184,28 +612,73 @@ public class KdTreeST<Value> {
 		range(rect, rectPoints, node.right);
 	}
 	
+	/**
+	 * Returns all the entries whose points are inside the rectangle.
+	 */
+	public Iterable<Entry<Value>> rangeEntries(RectHV rect){
+		if (rect == null) {
+			throw new NullPointerException();
+		}
+		Queue<Entry<Value>> rectEntries = new Queue<>();
+		rangeEntries(rect, rectEntries, root);
+		return rectEntries;
+	}
+	
+	private void rangeEntries(RectHV rect, Queue<Entry<Value>> rectEntries, Node<Value> node) {
+		if (node == null || !node.intersects(rect)) return;
+		if (rect.contains(node.point)) {
+			rectEntries.enqueue(node);
+		}
+		rangeEntries(rect, rectEntries, node.left);
+		rangeEntries(rect, rectEntries, node.right);
+	}
+	
 	/**
 	 * Returns the nearest neighbor to point p; 
 	 * null if the Symbol Table is empty.
 	 */
 	public Point2D nearest(Point2D p){
+		Entry<Value> nearest = nearestEntry(p);
+		return nearest == null ? null : nearest.point();
+	}
+	
+	/**
+	 * Returns the entry of the nearest neighbor to point p; 
+	 * null if the Symbol Table is empty.
+	 */
+	public Entry<Value> nearestEntry(Point2D p){
 		if(p == null) {
 			throw new NullPointerException();
 		}
-		return nearest(p, root, root.point);
+		if (root == null) {
+			return null;
+		}
+		return nearest(p, root, root);
+	}
+	
+	/**
+	 * nearestEntry() seeded with an entry of this tree close to p, such as the answer to the 
+	 * previous query of a spatially sorted batch: its distance prunes from the first node on.
+	 */
+	@SuppressWarnings("unchecked")
+	Entry<Value> nearestEntry(Point2D p, Entry<Value> hint){
+		if (hint == null) {
+			return nearestEntry(p);
+		}
+		return nearest(p, root, (Node<Value>) hint);
 	}
 	
 	/**
 	 * Private helper method for nearest.
 	 */
-	private Point2D nearest(Point2D p, Node node, Point2D paragon) {
+	private Node<Value> nearest(Point2D p, Node<Value> node, Node<Value> paragon) {
 		if (node == null) {
 			return paragon;
 		}
-		if (node.rect.distanceSquaredTo(p) > paragon.distanceSquaredTo(p)) return paragon;
-		if (p.distanceSquaredTo(node.point) < p.distanceSquaredTo(paragon)) paragon = node.point;
+		if (node.distanceSquaredTo(p) > paragon.point.distanceSquaredTo(p)) return paragon;
+		if (p.distanceSquaredTo(node.point) < p.distanceSquaredTo(paragon.point)) paragon = node;
 		
-		if (node.left != null && node.left.rect.contains(p)) {
+		if (node.left != null && node.left.contains(p)) {
 			paragon = nearest(p, node.left, paragon);
 			paragon = nearest(p, node.right, paragon);
 		} else {
@@ -215,10 +688,70 @@ public class KdTreeST<Value> {
 		return paragon;
 	}
 	
+	/**
+	 * Returns the k nearest neighbors to point p, closest first.
+	 */
+	public Iterable<Point2D> nearest(Point2D p, int k){
+		return nearestNeighbors(p, k).points();
+	}
+	
+	/**
+	 * Returns the entries of the k nearest neighbors to point p, closest first.
+	 */
+	public Iterable<Entry<Value>> nearestEntries(Point2D p, int k){
+		return nearestNeighbors(p, k).entries();
+	}
+	
+	private Neighbors<Value> nearestNeighbors(Point2D p, int k) {
+		if (p == null) {
+			throw new NullPointerException();
+		}
+		if (k < 1) {
+			throw new IllegalArgumentException("k must be positive");
+		}
+		// no more than size neighbors can be found, so don't size the heap past them
+		Neighbors<Value> best = new Neighbors<>(Math.min(k, size));
+		nearest(p, root, best);
+		return best;
+	}
+	
+	/**
+	 * Private helper method for the k nearest neighbors; 
+	 * same pruning rule as nearest(), against the k-th best distance.
+	 */
+	private void nearest(Point2D p, Node<Value> node, Neighbors<Value> best) {
+		if (node == null || node.distanceSquaredTo(p) > best.kth()) return;
+		best.offer(node, p.distanceSquaredTo(node.point));
+		
+		if (node.left != null && node.left.contains(p)) {
+			nearest(p, node.left, best);
+			nearest(p, node.right, best);
+		} else {
+			nearest(p, node.right, best);
+			nearest(p, node.left, best);
+		}
+	}
+	
+	/**
+	 * Counts the nodes nearest() visits looking for p; main() compares the split policies by it.
+	 */
+	private int visits(Point2D p, Node<Value> node, Node<Value>[] paragon) {
+		if (node == null || node.distanceSquaredTo(p) > paragon[0].point.distanceSquaredTo(p)) return 0;
+		if (p.distanceSquaredTo(node.point) < p.distanceSquaredTo(paragon[0].point)) paragon[0] = node;
+		
+		if (node.left != null && node.left.contains(p)) {
+			int count = 1 + visits(p, node.left, paragon);
+			return count + visits(p, node.right, paragon);
+		} else {
+			int count = 1 + visits(p, node.right, paragon);
+			return count + visits(p, node.left, paragon);
+		}
+	}
+	
 	/**
 	 * Takes a point (X or Y), and returns its node in 2D.
 	 */
-	private double compareXY(Node node, Point2D p, boolean isVertical){
+	private double compareXY(Node<Value> node, Point2D p, boolean isVertical){
 		if(isVertical) {
 			return p.x() - node.point.x();
 		}
@@ -241,23 +774,23 @@ public class KdTreeST<Value> {
     	 * @param  ymin the <em>y</em>-coordinate of the lower-left endPoint
      	 * @param  ymax the <em>y</em>-coordinate of the upper-right endPoint
 	 */
-	private RectHV rectCreator(Node parent, Point2D p, boolean isVertical) {
+	private RectHV rectCreator(Node<Value> parent, Point2D p, boolean isVertical) {
 		if (parent == null) {
 			return new RectHV(- Double.MAX_VALUE, - Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
 		}
 		double compare = compareXY(parent, p, !isVertical);
 		
 		if (isVertical  && compare >= 0) 
-			return new RectHV(parent.rect.xmin(), parent.point.y(), parent.rect.xmax(), parent.rect.ymax());
+			return new RectHV(parent.xmin, parent.point.y(), parent.xmax, parent.ymax);
 
 		if (isVertical  && compare <  0) 
-			return new RectHV(parent.rect.xmin(), parent.rect.ymin(), parent.rect.xmax(), parent.point.y());
+			return new RectHV(parent.xmin, parent.ymin, parent.xmax, parent.point.y());
 
 		if (!isVertical && compare >= 0) 
-			return new RectHV(parent.point.x(), parent.rect.ymin(), parent.rect.xmax(), parent.rect.ymax());
+			return new RectHV(parent.point.x(), parent.ymin, parent.xmax, parent.ymax);
 
 		if (!isVertical && compare <  0) 
-			return new RectHV(parent.rect.xmin(), parent.rect.ymin(), parent.point.x(), parent.rect.ymax());
+			return new RectHV(parent.xmin, parent.ymin, parent.point.x(), parent.ymax);
 		
 		return null;
 	}
@@ -286,5 +819,33 @@ public class KdTreeST<Value> {
 		double timeTakenInSeconds = (endtime-starttime)/1000.0;
 		StdOut.println("Total time: " + timeTakenInSeconds);
 		StdOut.println("Average per second: " + numberOfTimesToCalculate / timeTakenInSeconds);
+		
+		// the same points as they are, and squeezed into a strip 1% as tall (a road network, say)
+		Queue<Entry<Integer>> square = new Queue<>();
+		Queue<Entry<Integer>> strip = new Queue<>();
+		for (Entry<Integer> e : kdtree.entries()) {
+			square.enqueue(e);
+			strip.enqueue(new Node<>(new Point2D(e.point().x(), e.point().y() / 100), e.value(), null));
+		}
+		int queries = 100000;
+		for (int squeeze : new int[] { 1, 100 }) {
+			StdOut.println(squeeze == 1 ? "Square:" : "Strip:");
+			for (SplitPolicy policy : SplitPolicy.values()) {
+				KdTreeST<Integer> tree = balanced(squeeze == 1 ? square : strip, policy);
+				@SuppressWarnings({ "unchecked", "rawtypes" })
+				Node<Integer>[] paragon = new Node[1];
+				long visited = 0;
+				starttime = System.currentTimeMillis();
+				for (int i = 0; i < queries; i++) {
+					Point2D p = new Point2D(StdRandom.uniform(), StdRandom.uniform() / squeeze);
+					paragon[0] = tree.root;
+					visited += tree.visits(p, tree.root, paragon);
+				}
+				endtime = System.currentTimeMillis();
+				StdOut.println("  " + policy + ": height " + tree.height(tree.root) 
+						+ ", nodes visited per nearest() " + (double) visited / queries 
+						+ ", time " + (endtime - starttime) / 1000.0);
+			}
+		}
 	}
 }
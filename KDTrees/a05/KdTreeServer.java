@@ -0,0 +1,310 @@
+package a05;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.Queue;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * Serves a KdTreeST<Integer> to other processes on this machine over TCP.
+ *
+ * Every message is a frame: a 4-byte length, then that many bytes. A request holds its id,
+ * an operation and the operation's arguments; the response carries the same id, a status
+ * and the entries found, each as x, y and value (20 bytes).
+ *
+ *     request   ┌────────┬────┬────┬───────────────────────────────────────────┐
+ *               │ length │ id │ op │ x y | x y k | xmin ymin xmax ymax | x y r │
+ *               └────────┴────┴────┴───────────────────────────────────────────┘
+ *     response  ┌────────┬────┬────────┬───────┬─────────────────────────┐
+ *               │ length │ id │ status │ count │ count × (x, y, value)   │
+ *               └────────┴────┴────────┴───────┴─────────────────────────┘
+ *
+ * Clients may pipeline: send many requests without waiting, and read the responses in the
+ * same order. One selector thread answers the complete frames a read brings in and sends
+ * all the answers back in a single write. Once a client leaves too many answers unread, the
+ * frames left over wait in its input buffer until the backlog drains, and its connection
+ * isn't read from meanwhile. A response holds at most MAX_ENTRIES entries; a query that
+ * finds more gets an ERROR. The tree is only read, never changed.
+ *
+ * @author Kevin Mora
+ */
+public class KdTreeServer implements AutoCloseable {
+	// operations, and the status of a response
+	static final byte NEAREST = 1, NEAREST_K = 2, RANGE = 3, WITHIN = 4;
+	static final byte OK = 0, ERROR = 1;
+	// bytes in a response before its entries, and in each entry
+	static final int HEADER = 9, ENTRY = 20;
+
+	// the longest request is RANGE: id, op and four doubles
+	private static final int MAX_FRAME = 64;
+	// unsent bytes for one connection beyond which it isn't read from
+	private static final int MAX_PENDING = 1 << 20;
+	// most entries in one response; a query that finds more gets an ERROR
+	static final int MAX_ENTRIES = 1 << 16;
+	// largest k of a NEAREST_K request; larger ones get an ERROR
+	static final int MAX_K = MAX_ENTRIES;
+
+	/**
+	 * Buffers of one client; out is kept in write mode.
+	 */
+	private static class Connection {
+		private final ByteBuffer in = ByteBuffer.allocate(1 << 16);
+		private ByteBuffer out = ByteBuffer.allocate(1 << 16);
+	}
+
+	private final KdTreeST<Integer> tree;
+	private final Selector selector;
+	private final ServerSocketChannel server;
+	private volatile boolean closed;
+	private volatile boolean serving;
+
+	/**
+	 * Listens on the loopback interface; port 0 picks a free port.
+	 */
+	public KdTreeServer(KdTreeST<Integer> tree, int port) throws IOException {
+		if (tree == null) {
+			throw new NullPointerException();
+		}
+		this.tree = tree;
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/**
+	 * Returns the port the server listens on.
+	 */
+	public int port() throws IOException {
+		return ((InetSocketAddress) server.getLocalAddress()).getPort();
+	}
+
+	/**
+	 * Answers clients on the calling thread until close().
+	 */
+	public void serve() throws IOException {
+		serving = true;
+		try {
+			while (!closed) {
+				selector.select();
+				for (SelectionKey key : selector.selectedKeys()) {
+					try {
+						if (key.isAcceptable()) {
+							accept();
+							continue;
+						}
+						if (key.isReadable()) read(key);
+						if (key.isValid() && key.isWritable()) write(key);
+					} catch (IOException e) {
+						// the client went away or broke the protocol; drop only its connection
+						key.cancel();
+						key.channel().close();
+					}
+				}
+				selector.selectedKeys().clear();
+			}
+		} finally {
+			shutdown();
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = server.accept();
+		if (channel == null) return;
+		channel.configureBlocking(false);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		channel.register(selector, SelectionKey.OP_READ, new Connection());
+	}
+
+	/**
+	 * Reads what the socket has, then answers and sends as write() does.
+	 */
+	private void read(SelectionKey key) throws IOException {
+		SocketChannel channel = (SocketChannel) key.channel();
+		Connection c = (Connection) key.attachment();
+		if (channel.read(c.in) < 0) {
+			key.cancel();
+			channel.close();
+			return;
+		}
+		write(key);
+	}
+
+	/**
+	 * Answers the complete frames in the input buffer until the backlog reaches MAX_PENDING;
+	 * the frames after that stay in the buffer. Returns whether any are left.
+	 */
+	private boolean answerAll(Connection c) throws IOException {
+		c.in.flip();
+		while (c.in.remaining() >= 4 && c.out.position() < MAX_PENDING) {
+			int length = c.in.getInt(c.in.position());
+			if (length < 5 || length > MAX_FRAME) {
+				throw new IOException("bad frame length " + length);
+			}
+			if (c.in.remaining() < 4 + length) break;
+			c.in.getInt();
+			int limit = c.in.limit(), end = c.in.position() + length;
+			c.in.limit(end);
+			answer(c);
+			c.in.limit(limit);
+			c.in.position(end);
+		}
+		boolean left = c.in.remaining() >= 4 && c.in.remaining() >= 4 + c.in.getInt(c.in.position());
+		c.in.compact();
+		return left;
+	}
+
+	/**
+	 * Appends the response to the request in c.in to c.out.
+	 */
+	private void answer(Connection c) {
+		int id = c.in.getInt();
+		byte op = c.in.get();
+		int start = reserve(c, 4 + HEADER).position();
+		c.out.position(start + 4 + HEADER);
+		byte status = OK;
+		int count = 0;
+		try {
+			switch (op) {
+			case NEAREST: {
+				KdTreeST.Entry<Integer> e = tree.nearestEntry(new Point2D(c.in.getDouble(), c.in.getDouble()));
+				if (e != null) count = put(c, start, e);
+				break;
+			}
+			case NEAREST_K: {
+				Point2D p = new Point2D(c.in.getDouble(), c.in.getDouble());
+				int k = c.in.getInt();
+				if (k > MAX_K) {
+					throw new IllegalArgumentException("k can't be above " + MAX_K);
+				}
+				for (KdTreeST.Entry<Integer> e : tree.nearestEntries(p, k)) count += put(c, start, e);
+				break;
+			}
+			case RANGE: {
+				RectHV rect = new RectHV(c.in.getDouble(), c.in.getDouble(), c.in.getDouble(), c.in.getDouble());
+				for (KdTreeST.Entry<Integer> e : tree.rangeEntries(rect)) count += put(c, start, e);
+				break;
+			}
+			case WITHIN: {
+				Point2D p = new Point2D(c.in.getDouble(), c.in.getDouble());
+				double r = c.in.getDouble();
+				if (!(r >= 0)) {
+					throw new IllegalArgumentException("radius can't be negative");
+				}
+				RectHV box = new RectHV(p.x() - r, p.y() - r, p.x() + r, p.y() + r);
+				for (KdTreeST.Entry<Integer> e : tree.rangeEntries(box)) {
+					if (p.distanceSquaredTo(e.point()) <= r * r) count += put(c, start, e);
+				}
+				break;
+			}
+			default:
+				throw new IllegalArgumentException("unknown operation " + op);
+			}
+		} catch (IllegalArgumentException | BufferUnderflowException e) {
+			c.out.position(start + 4 + HEADER);
+			status = ERROR;
+			count = 0;
+		}
+		c.out.putInt(start, c.out.position() - start - 4);
+		c.out.putInt(start + 4, id);
+		c.out.put(start + 8, status);
+		c.out.putInt(start + 9, count);
+	}
+
+	/**
+	 * Appends one entry of the response being built at start; 1, the count of entries added.
+	 */
+	private static int put(Connection c, int start, KdTreeST.Entry<Integer> e) {
+		if (c.out.position() - start - 4 - HEADER >= MAX_ENTRIES * ENTRY) {
+			throw new IllegalArgumentException("more than " + MAX_ENTRIES + " entries");
+		}
+		reserve(c, ENTRY).putDouble(e.point().x()).putDouble(e.point().y()).putInt(e.value());
+		return 1;
+	}
+
+	/**
+	 * Makes room for n more bytes in c.out, and returns it.
+	 */
+	private static ByteBuffer reserve(Connection c, int n) {
+		if (c.out.remaining() < n) {
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(2 * c.out.capacity(), c.out.position() + n));
+			c.out.flip();
+			larger.put(c.out);
+			c.out = larger;
+		}
+		return c.out;
+	}
+
+	/**
+	 * Answers the frames waiting in the input buffer as far as the backlog allows, sends what
+	 * the socket takes, and only reads more once every waiting frame has been answered.
+	 */
+	private void write(SelectionKey key) throws IOException {
+		Connection c = (Connection) key.attachment();
+		boolean left;
+		do {
+			left = answerAll(c);
+			c.out.flip();
+			((SocketChannel) key.channel()).write(c.out);
+			c.out.compact();
+		} while (left && c.out.position() == 0);
+		int pending = c.out.position();
+		key.interestOps((pending > 0 ? SelectionKey.OP_WRITE : 0) | (left || pending >= MAX_PENDING ? 0 : SelectionKey.OP_READ));
+	}
+
+	/**
+	 * Stops serving and closes every connection.
+	 */
+	public void close() throws IOException {
+		closed = true;
+		selector.wakeup();
+		if (!serving) shutdown();
+	}
+
+	private synchronized void shutdown() throws IOException {
+		if (!selector.isOpen()) return;
+		for (SelectionKey key : selector.keys()) {
+			key.channel().close();
+		}
+		selector.close();
+	}
+
+	/**
+	 * Reads a file of points into a balanced tree, valued by their line number.
+	 */
+	static KdTreeST<Integer> load(String filename) {
+		In in = new In(filename);
+		Queue<KdTreeST.Entry<Integer>> entries = new Queue<>();
+		for (int i = 0; !in.isEmpty(); i++) {
+			entries.enqueue(new KdTreeST.Node<>(new Point2D(in.readDouble(), in.readDouble()), i, null));
+		}
+		return KdTreeST.balanced(entries);
+	}
+
+	/**
+	 * Client application: serves a file of points.
+	 * @param args ––> [file of points] [port]
+	 */
+	public static void main(String[] args) throws IOException {
+		String filename = args.length > 0 ? args[0] : "src/points/input100K.txt";
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 7070;
+		KdTreeST<Integer> tree = load(filename);
+		try (KdTreeServer server = new KdTreeServer(tree, port)) {
+			StdOut.println("Serving " + tree.size() + " points on port " + server.port());
+			server.serve();
+		}
+	}
+}
@@ -0,0 +1,348 @@
+package a05;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.Queue;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+/**
+ * Bentley–Saxe logarithmic method for a symbol table of points.
+ *
+ * put() only appends to a small flat buffer. A full buffer is sealed and handed
+ * to a background thread, which merges it into a set of static balanced 2d-trees
+ * (KdTreeST.balanced) like a binary counter: level i is either empty or holds
+ * ~BUFFER·2^i points, and a carry rebuilds the first empty level from every
+ * level below it. Each point is rebuilt O(log N) times at O(log N) apiece, so
+ * inserts cost amortized O(log² N), and every tree that is queried stays balanced.
+ *
+ * Queries fan out over the buffer, the sealed buffers still waiting to be merged
+ * and every level, newest first, so the newest value of a point always wins.
+ *
+ *     buffer ──▶ sealed ──▶ level 0 ──▶ level 1 ──▶ ... ──▶ level i
+ *     (newest)                                                (oldest)
+ *
+ * @author Kevin Mora
+ */
+public class LogarithmicKdTreeST<Value> implements AutoCloseable {
+	// points per buffer, and how many sealed buffers may wait for the merger before put() blocks
+	private static final int BUFFER = 256;
+	private static final int MAX_SEALED = 8;
+
+	/**
+	 * A run of puts in arrival order.
+	 */
+	private static class Chunk<Value> {
+		private final Point2D[] points;
+		private final Value[] values;
+		private int n;
+
+		@SuppressWarnings("unchecked")
+		Chunk(int capacity) {
+			points = new Point2D[capacity];
+			values = (Value[]) new Object[capacity];
+		}
+
+		Chunk(Chunk<Value> that) {
+			points = Arrays.copyOf(that.points, that.n);
+			values = Arrays.copyOf(that.values, that.n);
+			n = that.n;
+		}
+
+		/**
+		 * The entries, oldest first, as KdTreeST.balanced() expects them.
+		 */
+		Iterable<KdTreeST.Entry<Value>> entries() {
+			Queue<KdTreeST.Entry<Value>> queue = new Queue<>();
+			for (int i = 0; i < n; i++) {
+				queue.enqueue(new KdTreeST.Node<>(points[i], values[i], null));
+			}
+			return queue;
+		}
+	}
+
+	/**
+	 * What the merger publishes: sealed buffers (oldest first) and the levels.
+	 * Never mutated once published.
+	 */
+	private static class State<Value> {
+		private final ArrayList<Chunk<Value>> sealed;
+		private final ArrayList<KdTreeST<Value>> levels;
+
+		State(ArrayList<Chunk<Value>> sealed, ArrayList<KdTreeST<Value>> levels) {
+			this.sealed = sealed;
+			this.levels = levels;
+		}
+	}
+
+	private final ExecutorService merger = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "kdtree-merger");
+		t.setDaemon(true);
+		return t;
+	});
+
+	// guarded by this
+	private Chunk<Value> buffer = new Chunk<>(BUFFER);
+	private State<Value> state = new State<>(new ArrayList<>(), new ArrayList<>());
+	private int size;
+	private boolean closed;
+
+	/**
+	 * Returns the number of points.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the status of the symbol table.
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Associates the value with the point.
+	 * @throws IllegalStateException if the symbol table has been closed
+	 */
+	public synchronized void put(Point2D p, Value val) {
+		if (p == null || val == null) {
+			throw new NullPointerException();
+		}
+		if (closed) {
+			throw new IllegalStateException("symbol table is closed");
+		}
+		if (find(buffer, p) == null && get(state, p) == null) size++;
+		buffer.points[buffer.n] = p;
+		buffer.values[buffer.n] = val;
+		if (++buffer.n < BUFFER) return;
+
+		while (state.sealed.size() >= MAX_SEALED) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		// closed while waiting: the full buffer stays queryable where it is
+		if (closed) return;
+		Chunk<Value> full = buffer;
+		ArrayList<Chunk<Value>> sealed = new ArrayList<>(state.sealed);
+		sealed.add(full);
+		state = new State<>(sealed, state.levels);
+		buffer = new Chunk<>(BUFFER);
+		merger.execute(() -> merge(full));
+	}
+
+	/**
+	 * Carries a sealed buffer into the levels on the merger thread.
+	 */
+	private void merge(Chunk<Value> chunk) {
+		ArrayList<KdTreeST<Value>> levels;
+		synchronized (this) {
+			levels = new ArrayList<>(state.levels);
+		}
+		int i = 0;
+		while (i < levels.size() && levels.get(i) != null) i++;
+
+		// older levels go first so that newer values win
+		Queue<KdTreeST.Entry<Value>> carry = new Queue<>();
+		for (int j = i - 1; j >= 0; j--) {
+			for (KdTreeST.Entry<Value> e : levels.get(j).entries()) carry.enqueue(e);
+			levels.set(j, null);
+		}
+		for (KdTreeST.Entry<Value> e : chunk.entries()) carry.enqueue(e);
+		KdTreeST<Value> merged = KdTreeST.balanced(carry);
+		if (i == levels.size()) levels.add(merged);
+		else levels.set(i, merged);
+
+		synchronized (this) {
+			ArrayList<Chunk<Value>> sealed = new ArrayList<>(state.sealed);
+			sealed.remove(chunk);
+			state = new State<>(sealed, levels);
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Returns the value associated with a point.
+	 */
+	public Value get(Point2D p) {
+		if (p == null) {
+			throw new NullPointerException("arguments can't be null");
+		}
+		State<Value> current;
+		synchronized (this) {
+			Value val = find(buffer, p);
+			if (val != null) return val;
+			current = state;
+		}
+		return get(current, p);
+	}
+
+	/**
+	 * Private helper method for get(); the sealed buffers, then the levels, newest first.
+	 */
+	private Value get(State<Value> current, Point2D p) {
+		for (int i = current.sealed.size() - 1; i >= 0; i--) {
+			Value val = find(current.sealed.get(i), p);
+			if (val != null) return val;
+		}
+		for (KdTreeST<Value> level : current.levels) {
+			Value val = level == null ? null : level.get(p);
+			if (val != null) return val;
+		}
+		return null;
+	}
+
+	private static <Value> Value find(Chunk<Value> chunk, Point2D p) {
+		for (int i = chunk.n - 1; i >= 0; i--) {
+			if (chunk.points[i].equals(p)) return chunk.values[i];
+		}
+		return null;
+	}
+
+	/**
+	 * Determines if Symbol Table has a point.
+	 */
+	public boolean contains(Point2D p) {
+		return get(p) != null;
+	}
+
+	/**
+	 * Every buffer to scan, newest first: a copy of the current one, then the sealed ones.
+	 */
+	private ArrayList<Chunk<Value>> chunks(State<Value> current, Chunk<Value> copy) {
+		ArrayList<Chunk<Value>> chunks = new ArrayList<>();
+		chunks.add(copy);
+		for (int i = current.sealed.size() - 1; i >= 0; i--) chunks.add(current.sealed.get(i));
+		return chunks;
+	}
+
+	/**
+	 * Returns all the points that are inside the rectangle.
+	 */
+	public Iterable<Point2D> range(RectHV rect) {
+		if (rect == null) {
+			throw new NullPointerException();
+		}
+		State<Value> current;
+		Chunk<Value> copy;
+		synchronized (this) {
+			current = state;
+			copy = new Chunk<>(buffer);
+		}
+		HashSet<Point2D> seen = new HashSet<>();
+		Queue<Point2D> rectPoints = new Queue<>();
+		for (Chunk<Value> chunk : chunks(current, copy)) {
+			for (int i = 0; i < chunk.n; i++) {
+				if (rect.contains(chunk.points[i]) && seen.add(chunk.points[i])) rectPoints.enqueue(chunk.points[i]);
+			}
+		}
+		for (KdTreeST<Value> level : current.levels) {
+			if (level == null) continue;
+			for (Point2D q : level.range(rect)) {
+				if (seen.add(q)) rectPoints.enqueue(q);
+			}
+		}
+		return rectPoints;
+	}
+
+	/**
+	 * Returns the nearest neighbor to point p;
+	 * null if the Symbol Table is empty.
+	 */
+	public Point2D nearest(Point2D p) {
+		KdTreeST.Entry<Value> nearest = nearestEntry(p);
+		return nearest == null ? null : nearest.point();
+	}
+
+	/**
+	 * Returns the entry of the nearest neighbor to point p;
+	 * null if the Symbol Table is empty.
+	 *
+	 * Parts are searched newest first and a candidate only replaces a strictly
+	 * closer one, so the winner comes from the newest part holding its point.
+	 */
+	public KdTreeST.Entry<Value> nearestEntry(Point2D p) {
+		if (p == null) {
+			throw new NullPointerException();
+		}
+		State<Value> current;
+		Chunk<Value> copy;
+		synchronized (this) {
+			current = state;
+			copy = new Chunk<>(buffer);
+		}
+		KdTreeST.Entry<Value> best = null;
+		double bestDist = Double.POSITIVE_INFINITY;
+		for (Chunk<Value> chunk : chunks(current, copy)) {
+			for (int i = chunk.n - 1; i >= 0; i--) {
+				double d = p.distanceSquaredTo(chunk.points[i]);
+				if (d < bestDist) {
+					bestDist = d;
+					best = new KdTreeST.Node<>(chunk.points[i], chunk.values[i], null);
+				}
+			}
+		}
+		for (KdTreeST<Value> level : current.levels) {
+			KdTreeST.Entry<Value> e = level == null ? null : level.nearestEntry(p);
+			if (e != null && p.distanceSquaredTo(e.point()) < bestDist) {
+				bestDist = p.distanceSquaredTo(e.point());
+				best = e;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Stops the merger thread; sealed buffers not yet merged stay queryable,
+	 * but every later put() throws IllegalStateException.
+	 */
+	public void close() {
+		synchronized (this) {
+			closed = true;
+		}
+		merger.shutdown();
+	}
+
+	/**
+	 * Client application: insert throughput against KdTreeST.put().
+	 */
+	public static void main(String[] args) {
+		String filename = "src/points/input100K.txt";
+		In in = new In(filename);
+		Queue<Point2D> points = new Queue<>();
+		while (!in.isEmpty()) {
+			points.enqueue(new Point2D(in.readDouble(), in.readDouble()));
+		}
+
+		long starttime = System.currentTimeMillis();
+		KdTreeST<Integer> kdtree = new KdTreeST<>();
+		int i = 0;
+		for (Point2D p : points) kdtree.put(p, i++);
+		StdOut.println("KdTreeST puts: " + (System.currentTimeMillis() - starttime) / 1000.0);
+
+		starttime = System.currentTimeMillis();
+		try (LogarithmicKdTreeST<Integer> lsm = new LogarithmicKdTreeST<>()) {
+			i = 0;
+			for (Point2D p : points) lsm.put(p, i++);
+			StdOut.println("LogarithmicKdTreeST puts: " + (System.currentTimeMillis() - starttime) / 1000.0);
+
+			starttime = System.currentTimeMillis();
+			int numberOfTimesToCalculate = 1000000;
+			for (int j = 0; j < numberOfTimesToCalculate; j++) {
+				lsm.nearest(new Point2D(StdRandom.uniform(), StdRandom.uniform()));
+			}
+			StdOut.println("LogarithmicKdTreeST nearest: " + (System.currentTimeMillis() - starttime) / 1000.0);
+		}
+	}
+}
@@ -0,0 +1,392 @@
+package a05;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.Queue;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+/**
+ * A static symbol table of points kept in Morton (Z-curve) order in flat arrays.
+ *
+ * Each point is quantized to 16 bits per coordinate inside the bounding box of all
+ * the points, and the bits are interleaved (y x y x ... y x) into a 32-bit code:
+ * sorting by code lays the plane out along a Z-shaped curve, so points that are
+ * close in the plane are mostly close in the arrays. The build is one parallel sort
+ * of (code, index) pairs packed into longs; everything else is a scan.
+ *
+ *     codes   ┌──┬──┬──┬──┬──┬──┬─  sorted 32-bit Morton codes
+ *     xs, ys  ├──┼──┼──┼──┼──┼──┼─  coordinates, same order
+ *     values  └──┴──┴──┴──┴──┴──┴─
+ *     boxes   implicit binary tree of bounding boxes over runs of LEAF points
+ *
+ * range() turns the rectangle into the interval [code(lower left), code(upper right)]
+ * and binary searches for its start; whenever the scan leaves the rectangle, BIGMIN
+ * (Tropf and Herzog) gives the next code back inside it, and a binary search jumps there.
+ * nearest() walks the implicit tree closer child first, pruning boxes exactly as KdTreeST
+ * prunes its rectangles.
+ *
+ * @author Kevin Mora
+ */
+public class MortonST<Value> {
+	private static final int BITS = 16;
+	private static final int CELLS = 1 << BITS;
+	private static final long EVEN = 0x55555555L;
+	private static final long ODD = 0xAAAAAAAAL;
+	private static final int LEAF = 16;
+
+	private final int n;
+	private final long[] codes;
+	private final double[] xs;
+	private final double[] ys;
+	private final Value[] values;
+	private final double minX, minY, scaleX, scaleY;
+
+	// implicit tree: node k has children 2k and 2k+1, leaf k covers points [(k - leaves) * LEAF, + LEAF)
+	private final int leaves;
+	private final double[] boxes;
+
+	/**
+	 * Builds the symbol table from the entries; later entries for the same point win.
+	 */
+	@SuppressWarnings("unchecked")
+	public MortonST(Iterable<? extends KdTreeST.Entry<Value>> entries) {
+		if (entries == null) {
+			throw new NullPointerException();
+		}
+		HashMap<Point2D, Value> unique = new HashMap<>();
+		for (KdTreeST.Entry<Value> e : entries) {
+			if (e.point() == null || e.value() == null) {
+				throw new NullPointerException();
+			}
+			unique.remove(e.point());
+			unique.put(e.point(), e.value());
+		}
+		n = unique.size();
+		Point2D[] points = unique.keySet().toArray(new Point2D[0]);
+
+		double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+		double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+		for (Point2D p : points) {
+			x0 = Math.min(x0, p.x());
+			y0 = Math.min(y0, p.y());
+			x1 = Math.max(x1, p.x());
+			y1 = Math.max(y1, p.y());
+		}
+		minX = x0;
+		minY = y0;
+		scaleX = x1 > x0 ? CELLS / (x1 - x0) : 0;
+		scaleY = y1 > y0 ? CELLS / (y1 - y0) : 0;
+
+		// sort (code, index) pairs in one parallel sort, then lay the arrays out in that order;
+		// flipping the sign bit makes the signed sort order the unsigned order of the codes
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = (encode(cellX(points[i].x()), cellY(points[i].y())) << 32 | i) ^ Long.MIN_VALUE;
+		}
+		Arrays.parallelSort(keys);
+		codes = new long[n];
+		xs = new double[n];
+		ys = new double[n];
+		values = (Value[]) new Object[n];
+		for (int i = 0; i < n; i++) {
+			Point2D p = points[(int) keys[i]];
+			codes[i] = (keys[i] ^ Long.MIN_VALUE) >>> 32;
+			xs[i] = p.x();
+			ys[i] = p.y();
+			values[i] = unique.get(p);
+		}
+
+		int l = 1;
+		while (l * LEAF < n) l *= 2;
+		leaves = l;
+		boxes = new double[8 * leaves];
+		for (int k = 2 * leaves - 1; k >= 1; k--) {
+			int b = 4 * k;
+			boxes[b] = boxes[b + 1] = Double.POSITIVE_INFINITY;
+			boxes[b + 2] = boxes[b + 3] = Double.NEGATIVE_INFINITY;
+			if (k >= leaves) {
+				int lo = (k - leaves) * LEAF, hi = Math.min(n, lo + LEAF);
+				for (int i = lo; i < hi; i++) grow(b, xs[i], ys[i], xs[i], ys[i]);
+			} else {
+				int c = 8 * k;
+				grow(b, boxes[c], boxes[c + 1], boxes[c + 2], boxes[c + 3]);
+				grow(b, boxes[c + 4], boxes[c + 5], boxes[c + 6], boxes[c + 7]);
+			}
+		}
+	}
+
+	private void grow(int b, double x0, double y0, double x1, double y1) {
+		boxes[b] = Math.min(boxes[b], x0);
+		boxes[b + 1] = Math.min(boxes[b + 1], y0);
+		boxes[b + 2] = Math.max(boxes[b + 2], x1);
+		boxes[b + 3] = Math.max(boxes[b + 3], y1);
+	}
+
+	/**
+	 * Returns the number of points.
+	 */
+	public int size() {
+		return n;
+	}
+
+	/**
+	 * Returns the status of the symbol table.
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Returns the value associated with a point.
+	 */
+	public Value get(Point2D p) {
+		if (p == null) {
+			throw new NullPointerException("arguments can't be null");
+		}
+		long code = encode(cellX(p.x()), cellY(p.y()));
+		for (int i = lowerBound(code, 0); i < n && codes[i] == code; i++) {
+			if (xs[i] == p.x() && ys[i] == p.y()) return values[i];
+		}
+		return null;
+	}
+
+	/**
+	 * Determines if Symbol Table has a point.
+	 */
+	public boolean contains(Point2D p) {
+		return get(p) != null;
+	}
+
+	/**
+	 * Returns all the points in the Symbol Table, in Morton order.
+	 */
+	public Iterable<Point2D> points() {
+		Queue<Point2D> queue = new Queue<>();
+		for (int i = 0; i < n; i++) {
+			queue.enqueue(new Point2D(xs[i], ys[i]));
+		}
+		return queue;
+	}
+
+	/**
+	 * Returns all the points that are inside the rectangle.
+	 */
+	public Iterable<Point2D> range(RectHV rect) {
+		if (rect == null) {
+			throw new NullPointerException();
+		}
+		Queue<Point2D> rectPoints = new Queue<>();
+		if (n == 0) return rectPoints;
+		long zmin = encode(cellX(rect.xmin()), cellY(rect.ymin()));
+		long zmax = encode(cellX(rect.xmax()), cellY(rect.ymax()));
+		int i = lowerBound(zmin, 0);
+		while (i < n && codes[i] <= zmax) {
+			long code = codes[i];
+			if (inside(code, zmin, zmax)) {
+				if (rect.contains(new Point2D(xs[i], ys[i]))) {
+					rectPoints.enqueue(new Point2D(xs[i], ys[i]));
+				}
+				i++;
+			} else {
+				i = lowerBound(bigmin(code, zmin, zmax), i);
+			}
+		}
+		return rectPoints;
+	}
+
+	/**
+	 * Returns the nearest neighbor to point p;
+	 * null if the Symbol Table is empty.
+	 */
+	public Point2D nearest(Point2D p) {
+		int i = nearestIndex(p);
+		return i < 0 ? null : new Point2D(xs[i], ys[i]);
+	}
+
+	/**
+	 * Returns the entry of the nearest neighbor to point p;
+	 * null if the Symbol Table is empty.
+	 */
+	public KdTreeST.Entry<Value> nearestEntry(Point2D p) {
+		int i = nearestIndex(p);
+		return i < 0 ? null : new KdTreeST.Node<>(new Point2D(xs[i], ys[i]), values[i], null);
+	}
+
+	private int nearestIndex(Point2D p) {
+		if (p == null) {
+			throw new NullPointerException();
+		}
+		if (n == 0) return -1;
+		double[] best = { Double.POSITIVE_INFINITY, -1 };
+		nearest(p.x(), p.y(), 1, best);
+		return (int) best[1];
+	}
+
+	/**
+	 * Private helper method for nearest; best holds the squared distance and index of the paragon.
+	 */
+	private void nearest(double px, double py, int k, double[] best) {
+		if (boxDistance(px, py, k) >= best[0]) return;
+		if (k >= leaves) {
+			int lo = (k - leaves) * LEAF, hi = Math.min(n, lo + LEAF);
+			for (int i = lo; i < hi; i++) {
+				double dx = px - xs[i], dy = py - ys[i];
+				double d = dx * dx + dy * dy;
+				if (d < best[0]) {
+					best[0] = d;
+					best[1] = i;
+				}
+			}
+			return;
+		}
+		if (boxDistance(px, py, 2 * k) <= boxDistance(px, py, 2 * k + 1)) {
+			nearest(px, py, 2 * k, best);
+			nearest(px, py, 2 * k + 1, best);
+		} else {
+			nearest(px, py, 2 * k + 1, best);
+			nearest(px, py, 2 * k, best);
+		}
+	}
+
+	/**
+	 * Squared distance from (px, py) to the box of node k; infinite for an empty box.
+	 */
+	private double boxDistance(double px, double py, int k) {
+		int b = 4 * k;
+		if (boxes[b] > boxes[b + 2]) return Double.POSITIVE_INFINITY;
+		double dx = px < boxes[b] ? boxes[b] - px : px > boxes[b + 2] ? px - boxes[b + 2] : 0;
+		double dy = py < boxes[b + 1] ? boxes[b + 1] - py : py > boxes[b + 3] ? py - boxes[b + 3] : 0;
+		return dx * dx + dy * dy;
+	}
+
+	/* ––––––––––––––––––––––––– Morton codes ––––––––––––––––––––––––– */
+
+	private int cellX(double x) {
+		return clamp((x - minX) * scaleX);
+	}
+
+	private int cellY(double y) {
+		return clamp((y - minY) * scaleY);
+	}
+
+	private static int clamp(double cell) {
+		if (!(cell > 0)) return 0;
+		if (cell >= CELLS - 1) return CELLS - 1;
+		return (int) cell;
+	}
+
+	/**
+	 * Interleaves the bits of x (even positions) and y (odd positions); 
+	 * AsyncKdTreeST sorts its batches by the same code.
+	 */
+	static long encode(int x, int y) {
+		return spread(x) | spread(y) << 1;
+	}
+
+	private static long spread(long v) {
+		v = (v | v << 8) & 0x00FF00FFL;
+		v = (v | v << 4) & 0x0F0F0F0FL;
+		v = (v | v << 2) & 0x33333333L;
+		v = (v | v << 1) & 0x55555555L;
+		return v;
+	}
+
+	/**
+	 * Is the code inside the box spanned by the codes zmin and zmax in both dimensions?
+	 */
+	private static boolean inside(long code, long zmin, long zmax) {
+		long x = code & EVEN, y = code & ODD;
+		return x >= (zmin & EVEN) && x <= (zmax & EVEN) && y >= (zmin & ODD) && y <= (zmax & ODD);
+	}
+
+	/**
+	 * The smallest code greater than code inside the box spanned by zmin and zmax.
+	 */
+	private static long bigmin(long code, long zmin, long zmax) {
+		long bigmin = zmax;
+		for (int bit = 2 * BITS - 1; bit >= 0; bit--) {
+			long mask = 1L << bit;
+			boolean v = (code & mask) != 0, lo = (zmin & mask) != 0, hi = (zmax & mask) != 0;
+			if (!v && !lo && hi) {
+				bigmin = load(zmin, bit, true);
+				zmax = load(zmax, bit, false);
+			} else if (!v && lo && hi) {
+				return zmin;
+			} else if (v && !lo && !hi) {
+				return bigmin;
+			} else if (v && !lo && hi) {
+				zmin = load(zmin, bit, true);
+			}
+		}
+		return bigmin;
+	}
+
+	/**
+	 * Sets the bit to 1 and the lower bits of its dimension to 0 (one), or the bit
+	 * to 0 and the lower bits of its dimension to 1 (!one).
+	 */
+	private static long load(long code, int bit, boolean one) {
+		long lower = ((bit & 1) == 0 ? EVEN : ODD) & ((1L << bit) - 1);
+		if (one) return (code & ~lower) | 1L << bit;
+		return (code | lower) & ~(1L << bit);
+	}
+
+	/**
+	 * Index of the first code at least key, searching from index from.
+	 */
+	private int lowerBound(long key, int from) {
+		int lo = from, hi = n;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (codes[mid] < key) lo = mid + 1;
+			else hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Client application: MortonST against KdTreeST on the same points.
+	 */
+	public static void main(String[] args) {
+		String filename = "src/points/input100K.txt";
+		In in = new In(filename);
+		Queue<KdTreeST.Entry<Integer>> entries = new Queue<>();
+		for (int i = 0; !in.isEmpty(); i++) {
+			double x = in.readDouble();
+			double y = in.readDouble();
+			entries.enqueue(new KdTreeST.Node<>(new Point2D(x, y), i, null));
+		}
+
+		long starttime = System.currentTimeMillis();
+		KdTreeST<Integer> kdtree = new KdTreeST<>();
+		for (KdTreeST.Entry<Integer> e : entries) kdtree.put(e.point(), e.value());
+		StdOut.println("KdTreeST build: " + (System.currentTimeMillis() - starttime) / 1000.0);
+		starttime = System.currentTimeMillis();
+		MortonST<Integer> morton = new MortonST<>(entries);
+		StdOut.println("MortonST build: " + (System.currentTimeMillis() - starttime) / 1000.0);
+
+		int numberOfTimesToCalculate = 1000000;
+		Point2D[] queries = new Point2D[numberOfTimesToCalculate];
+		for (int i = 0; i < numberOfTimesToCalculate; i++) {
+			queries[i] = new Point2D(StdRandom.uniform(), StdRandom.uniform());
+		}
+		starttime = System.currentTimeMillis();
+		for (Point2D q : queries) kdtree.nearest(q);
+		StdOut.println("KdTreeST nearest: " + (System.currentTimeMillis() - starttime) / 1000.0);
+		starttime = System.currentTimeMillis();
+		for (Point2D q : queries) morton.nearest(q);
+		StdOut.println("MortonST nearest: " + (System.currentTimeMillis() - starttime) / 1000.0);
+
+		starttime = System.currentTimeMillis();
+		for (int i = 0; i < 10000; i++) kdtree.range(new RectHV(queries[i].x() * 0.9, queries[i].y() * 0.9, queries[i].x(), queries[i].y()));
+		StdOut.println("KdTreeST range: " + (System.currentTimeMillis() - starttime) / 1000.0);
+		starttime = System.currentTimeMillis();
+		for (int i = 0; i < 10000; i++) morton.range(new RectHV(queries[i].x() * 0.9, queries[i].y() * 0.9, queries[i].x(), queries[i].y()));
+		StdOut.println("MortonST range: " + (System.currentTimeMillis() - starttime) / 1000.0);
+	}
+}
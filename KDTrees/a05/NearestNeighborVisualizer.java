@@ -44,18 +44,26 @@ public class NearestNeighborVisualizer {
             brute.put(p, i);
         }
 
+        // render the points once, then draw them as a single picture
+        RasterLayer cloud = new RasterLayer(kdtree.points(), 512, 512, 0.0, 0.0, 1.0, 1.0, StdDraw.BLACK, .01);
+        Point2D last = null;
+
         while (true) {
             // the location (x, y) of the mouse
             double x = StdDraw.mouseX();
             double y = StdDraw.mouseY();
             Point2D query = new Point2D(x, y);
 
+            // the mouse hasn't moved: the frame on screen is still right
+            if (query.equals(last)) {
+                StdDraw.show(40);
+                continue;
+            }
+            last = query;
+
             // draw all of the points
             StdDraw.clear();
-            StdDraw.setPenColor(StdDraw.BLACK);
-            StdDraw.setPenRadius(.01);
-            for (Point2D p : brute.points())
-                p.draw();
+            cloud.draw();
 
             // draw in red the nearest neighbor according to the brute-force algorithm
             StdDraw.setPenRadius(.03);
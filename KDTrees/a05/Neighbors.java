@@ -0,0 +1,120 @@
+package a05;
+
+import java.util.Arrays;
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.Queue;
+
+/**
+ * Bounded max-heap of the k closest nodes seen so far by a nearest neighbor search.
+ *
+ * The root of the heap is the k-th closest candidate, so its distance is the
+ * pruning radius of the search once the heap is full.
+ *
+ * @author Kevin Mora
+ */
+class Neighbors<Value> {
+	private final KdTreeST.Node<Value>[] nodes;
+	private final double[] dist;
+	private int n;
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	Neighbors(int k) {
+		nodes = (KdTreeST.Node<Value>[]) new KdTreeST.Node[k];
+		dist = new double[k];
+	}
+
+	/**
+	 * Wraps arrays that already hold n candidates (used for sorting).
+	 */
+	private Neighbors(KdTreeST.Node<Value>[] nodes, double[] dist) {
+		this.nodes = nodes;
+		this.dist = dist;
+		this.n = nodes.length;
+	}
+
+	/**
+	 * Squared distance of the k-th closest candidate;
+	 * infinite until k candidates have been offered.
+	 */
+	double kth() {
+		return n < nodes.length ? Double.POSITIVE_INFINITY : dist[0];
+	}
+
+	/**
+	 * Keeps the node if it is among the k closest offered so far.
+	 */
+	void offer(KdTreeST.Node<Value> node, double d) {
+		if (n < nodes.length) {
+			nodes[n] = node;
+			dist[n] = d;
+			swim(n++);
+		} else if (d < dist[0]) {
+			nodes[0] = node;
+			dist[0] = d;
+			sink(0, n);
+		}
+	}
+
+	/**
+	 * Returns the candidates, closest first.
+	 */
+	Iterable<Point2D> points() {
+		Queue<Point2D> queue = new Queue<>();
+		for (KdTreeST.Node<Value> node : sorted()) {
+			queue.enqueue(node.point);
+		}
+		return queue;
+	}
+
+	/**
+	 * Returns the candidates' entries, closest first.
+	 */
+	Iterable<KdTreeST.Entry<Value>> entries() {
+		Queue<KdTreeST.Entry<Value>> queue = new Queue<>();
+		for (KdTreeST.Node<Value> node : sorted()) {
+			queue.enqueue(node);
+		}
+		return queue;
+	}
+
+	/**
+	 * Heapsorts a copy of the candidates, closest first.
+	 */
+	private KdTreeST.Node<Value>[] sorted() {
+		KdTreeST.Node<Value>[] order = Arrays.copyOf(nodes, n);
+		double[] keys = Arrays.copyOf(dist, n);
+		Neighbors<Value> heap = new Neighbors<>(order, keys);
+		for (int last = n - 1; last > 0; last--) {
+			heap.swap(0, last);
+			heap.sink(0, last);
+		}
+		return order;
+	}
+
+	private void swim(int i) {
+		while (i > 0 && dist[(i - 1) / 2] < dist[i]) {
+			swap(i, (i - 1) / 2);
+			i = (i - 1) / 2;
+		}
+	}
+
+	private void sink(int i, int size) {
+		while (2 * i + 1 < size) {
+			int j = 2 * i + 1;
+			if (j + 1 < size && dist[j] < dist[j + 1]) j++;
+			if (dist[i] >= dist[j]) break;
+			swap(i, j);
+			i = j;
+		}
+	}
+
+	private void swap(int i, int j) {
+		KdTreeST.Node<Value> node = nodes[i];
+		nodes[i] = nodes[j];
+		nodes[j] = node;
+		double d = dist[i];
+		dist[i] = dist[j];
+		dist[j] = d;
+	}
+}
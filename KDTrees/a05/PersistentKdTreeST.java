@@ -0,0 +1,407 @@
+package a05;
+
+import java.util.TreeMap;
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.Queue;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+/**
+ * A 2d-tree whose versions are all kept, sharing structure (multiversion concurrency control).
+ *
+ * Nodes never change once they are made. put() copies the nodes on the path from the root
+ * down to the point, so every put makes a new root (a new version) in ~lg N allocations,
+ * and everything off that path is shared with the previous version:
+ *
+ *     version 1     root₁              version 2     root₂        (copied path)
+ *                  /     \                          /     \
+ *                 a       b  ◀──────── shared ──────       b₂
+ *                                                            \
+ *                                                             new point
+ *
+ * Queries on the tree itself read the newest version, without locking. snapshot() pins the
+ * newest version in O(1): every query on the snapshot sees exactly that version, however
+ * many puts come after it. A version's nodes are only kept alive by the tree (while it's
+ * the newest) and by open snapshots of it, so closing the last snapshot of an old version
+ * releases it to the garbage collector. Puts are serialized; queries never wait for them.
+ *
+ * @author Kevin Mora
+ */
+public class PersistentKdTreeST<Value> {
+	// the rectangle of the root
+	private static final RectHV PLANE = new RectHV(- Double.MAX_VALUE, - Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
+
+	private static final class Node<Value> implements KdTreeST.Entry<Value> {
+		private final Point2D point;
+		private final Value val;
+		private final RectHV rect;
+		private final boolean vertical;
+		private final Node<Value> left, right;
+
+		Node(Point2D point, Value val, RectHV rect, boolean vertical, Node<Value> left, Node<Value> right) {
+			this.point = point;
+			this.val = val;
+			this.rect = rect;
+			this.vertical = vertical;
+			this.left = left;
+			this.right = right;
+		}
+
+		public Point2D point() {
+			return point;
+		}
+
+		public Value value() {
+			return val;
+		}
+	}
+
+	/**
+	 * A root, the number of points under it, and its version number.
+	 */
+	private static final class Version<Value> {
+		private final Node<Value> root;
+		private final int size;
+		private final long number;
+
+		Version(Node<Value> root, int size, long number) {
+			this.root = root;
+			this.size = size;
+			this.number = number;
+		}
+	}
+
+	/**
+	 * A pinned version of the tree; close it to let the version go.
+	 */
+	public static final class Snapshot<Value> implements AutoCloseable {
+		private final PersistentKdTreeST<Value> tree;
+		private volatile Version<Value> version;
+		private final long number;
+
+		private Snapshot(PersistentKdTreeST<Value> tree, Version<Value> version) {
+			this.tree = tree;
+			this.version = version;
+			this.number = version.number;
+		}
+
+		private Version<Value> pinned() {
+			Version<Value> v = version;
+			if (v == null) {
+				throw new IllegalStateException("snapshot of version " + number + " is closed");
+			}
+			return v;
+		}
+
+		/**
+		 * Returns the number of the version pinned.
+		 */
+		public long version() {
+			return number;
+		}
+
+		/**
+		 * Returns the number of points.
+		 */
+		public int size() {
+			return pinned().size;
+		}
+
+		/**
+		 * Returns the status of the symbol table.
+		 */
+		public boolean isEmpty() {
+			return size() == 0;
+		}
+
+		/**
+		 * Returns the value associated with a point.
+		 */
+		public Value get(Point2D p) {
+			return PersistentKdTreeST.get(pinned(), p);
+		}
+
+		/**
+		 * Determines if Symbol Table has a point.
+		 */
+		public boolean contains(Point2D p) {
+			return get(p) != null;
+		}
+
+		/**
+		 * Returns all the points that are inside the rectangle.
+		 */
+		public Iterable<Point2D> range(RectHV rect) {
+			return PersistentKdTreeST.range(pinned(), rect);
+		}
+
+		/**
+		 * Returns the nearest neighbor to point p;
+		 * null if the Symbol Table is empty.
+		 */
+		public Point2D nearest(Point2D p) {
+			KdTreeST.Entry<Value> nearest = nearestEntry(p);
+			return nearest == null ? null : nearest.point();
+		}
+
+		/**
+		 * Returns the entry of the nearest neighbor to point p;
+		 * null if the Symbol Table is empty.
+		 */
+		public KdTreeST.Entry<Value> nearestEntry(Point2D p) {
+			return PersistentKdTreeST.nearestEntry(pinned(), p);
+		}
+
+		/**
+		 * Unpins the version; the snapshot can't be queried afterwards.
+		 */
+		public synchronized void close() {
+			if (version == null) return;
+			version = null;
+			tree.unpin(number);
+		}
+	}
+
+	private volatile Version<Value> current = new Version<>(null, 0, 0);
+	// version number -> open snapshots of it
+	private final TreeMap<Long, Integer> pins = new TreeMap<>();
+
+	/**
+	 * Returns the number of the newest version; every put() adds one.
+	 */
+	public long version() {
+		return current.number;
+	}
+
+	/**
+	 * Returns the number of points in the newest version.
+	 */
+	public int size() {
+		return current.size;
+	}
+
+	/**
+	 * Returns the status of the symbol table.
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Associates the value with the point, in a new version.
+	 */
+	public synchronized void put(Point2D p, Value val) {
+		if (p == null || val == null) {
+			throw new NullPointerException();
+		}
+		Version<Value> v = current;
+		int size = get(v, p) == null ? v.size + 1 : v.size;
+		current = new Version<>(put(v.root, p, val, true, PLANE), size, v.number + 1);
+	}
+
+	/**
+	 * Private helper method for put(); copies the path down to p.
+	 * vertical and rect are only used for a new leaf.
+	 */
+	private static <Value> Node<Value> put(Node<Value> node, Point2D p, Value val, boolean vertical, RectHV rect) {
+		if (node == null) {
+			return new Node<>(p, val, rect, vertical, null, null);
+		}
+		double compare = node.vertical ? p.x() - node.point.x() : p.y() - node.point.y();
+		if (compare < 0) {
+			Node<Value> left = put(node.left, p, val, !node.vertical, childRect(node, true));
+			return new Node<>(node.point, node.val, node.rect, node.vertical, left, node.right);
+		}
+		if (node.point.equals(p)) {
+			return new Node<>(node.point, val, node.rect, node.vertical, node.left, node.right);
+		}
+		Node<Value> right = put(node.right, p, val, !node.vertical, childRect(node, false));
+		return new Node<>(node.point, node.val, node.rect, node.vertical, node.left, right);
+	}
+
+	/**
+	 * The rectangle of a child of node; only made when a new leaf needs it.
+	 */
+	private static <Value> RectHV childRect(Node<Value> node, boolean isLeft) {
+		if (isLeft && node.left != null) return node.left.rect;
+		if (!isLeft && node.right != null) return node.right.rect;
+		RectHV r = node.rect;
+		if (node.vertical) return isLeft ? new RectHV(r.xmin(), r.ymin(), node.point.x(), r.ymax())
+		                                 : new RectHV(node.point.x(), r.ymin(), r.xmax(), r.ymax());
+		else               return isLeft ? new RectHV(r.xmin(), r.ymin(), r.xmax(), node.point.y())
+		                                 : new RectHV(r.xmin(), node.point.y(), r.xmax(), r.ymax());
+	}
+
+	/**
+	 * Pins the newest version.
+	 */
+	public Snapshot<Value> snapshot() {
+		synchronized (pins) {
+			Version<Value> v = current;
+			pins.merge(v.number, 1, Integer::sum);
+			return new Snapshot<>(this, v);
+		}
+	}
+
+	private void unpin(long number) {
+		synchronized (pins) {
+			pins.computeIfPresent(number, (k, count) -> count == 1 ? null : count - 1);
+		}
+	}
+
+	/**
+	 * Returns the number of the oldest version still pinned by a snapshot,
+	 * or of the newest version if no snapshot is open.
+	 */
+	public long oldestPinned() {
+		synchronized (pins) {
+			return pins.isEmpty() ? current.number : pins.firstKey();
+		}
+	}
+
+	/**
+	 * Returns the value associated with a point, in the newest version.
+	 */
+	public Value get(Point2D p) {
+		return get(current, p);
+	}
+
+	/**
+	 * Determines if Symbol Table has a point.
+	 */
+	public boolean contains(Point2D p) {
+		return get(p) != null;
+	}
+
+	/**
+	 * Returns all the points of the newest version that are inside the rectangle.
+	 */
+	public Iterable<Point2D> range(RectHV rect) {
+		return range(current, rect);
+	}
+
+	/**
+	 * Returns the nearest neighbor to point p in the newest version;
+	 * null if the Symbol Table is empty.
+	 */
+	public Point2D nearest(Point2D p) {
+		KdTreeST.Entry<Value> nearest = nearestEntry(p);
+		return nearest == null ? null : nearest.point();
+	}
+
+	/**
+	 * Returns the entry of the nearest neighbor to point p in the newest version;
+	 * null if the Symbol Table is empty.
+	 */
+	public KdTreeST.Entry<Value> nearestEntry(Point2D p) {
+		return nearestEntry(current, p);
+	}
+
+	/* ––––––––––––––––––––––––– queries on one version ––––––––––––––––––––––––– */
+
+	private static <Value> Value get(Version<Value> v, Point2D p) {
+		if (p == null) {
+			throw new NullPointerException("arguments can't be null");
+		}
+		Node<Value> node = v.root;
+		while (node != null) {
+			double compare = node.vertical ? p.x() - node.point.x() : p.y() - node.point.y();
+			if (compare < 0) node = node.left;
+			else if (node.point.equals(p)) return node.val;
+			else node = node.right;
+		}
+		return null;
+	}
+
+	private static <Value> Iterable<Point2D> range(Version<Value> v, RectHV rect) {
+		if (rect == null) {
+			throw new NullPointerException();
+		}
+		Queue<Point2D> rectPoints = new Queue<>();
+		range(rect, rectPoints, v.root);
+		return rectPoints;
+	}
+
+	private static <Value> void range(RectHV rect, Queue<Point2D> rectPoints, Node<Value> node) {
+		if (node == null || !rect.intersects(node.rect)) return;
+		if (rect.contains(node.point)) {
+			rectPoints.enqueue(node.point);
+		}
+		range(rect, rectPoints, node.left);
+		range(rect, rectPoints, node.right);
+	}
+
+	private static <Value> KdTreeST.Entry<Value> nearestEntry(Version<Value> v, Point2D p) {
+		if (p == null) {
+			throw new NullPointerException();
+		}
+		if (v.root == null) {
+			return null;
+		}
+		return nearest(p, v.root, v.root);
+	}
+
+	/**
+	 * Private helper method for nearest, as in KdTreeST.
+	 */
+	private static <Value> Node<Value> nearest(Point2D p, Node<Value> node, Node<Value> paragon) {
+		if (node == null) {
+			return paragon;
+		}
+		if (node.rect.distanceSquaredTo(p) > paragon.point.distanceSquaredTo(p)) return paragon;
+		if (p.distanceSquaredTo(node.point) < p.distanceSquaredTo(paragon.point)) paragon = node;
+
+		if (node.left != null && node.left.rect.contains(p)) {
+			paragon = nearest(p, node.left, paragon);
+			paragon = nearest(p, node.right, paragon);
+		} else {
+			paragon = nearest(p, node.right, paragon);
+			paragon = nearest(p, node.left, paragon);
+		}
+		return paragon;
+	}
+
+	/**
+	 * Client application: a reader runs range() and nearest() on a snapshot while the
+	 * points of input100K go on being put, and checks that they all see the same version.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		String filename = "src/points/input100K.txt";
+		In in = new In(filename);
+		Queue<Point2D> points = new Queue<>();
+		while (!in.isEmpty()) {
+			points.enqueue(new Point2D(in.readDouble(), in.readDouble()));
+		}
+
+		PersistentKdTreeST<Integer> tree = new PersistentKdTreeST<>();
+		Thread ingest = new Thread(() -> {
+			int i = 0;
+			for (Point2D p : points) tree.put(p, i++);
+		});
+		long starttime = System.currentTimeMillis();
+		ingest.start();
+
+		int snapshots = 0, inconsistent = 0;
+		while (ingest.isAlive()) {
+			try (Snapshot<Integer> snapshot = tree.snapshot()) {
+				snapshots++;
+				int n = 0;
+				for (Point2D p : snapshot.range(new RectHV(0, 0, 1, 1))) n++;
+				for (int i = 0; i < 1000; i++) {
+					Point2D q = new Point2D(StdRandom.uniform(), StdRandom.uniform());
+					Point2D nearest = snapshot.nearest(q);
+					if (nearest != null && !snapshot.contains(nearest)) inconsistent++;
+				}
+				for (Point2D p : snapshot.range(new RectHV(0, 0, 1, 1))) n--;
+				if (n != 0) inconsistent++;
+			}
+		}
+		ingest.join();
+		StdOut.println("PersistentKdTreeST puts: " + (System.currentTimeMillis() - starttime) / 1000.0);
+		StdOut.println(snapshots + " snapshots read during ingest, " + inconsistent + " inconsistent");
+		StdOut.println("Versions: " + tree.version() + ", oldest pinned: " + tree.oldestPinned());
+	}
+}
@@ -1,9 +1,14 @@
 package a05;
 
+import java.util.Arrays;
+
+import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.Point2D;
 import edu.princeton.cs.algs4.Queue;
 import edu.princeton.cs.algs4.RectHV;
 import edu.princeton.cs.algs4.RedBlackBST;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
 
 /**
  * Create a symbol table data type whose keys are two-dimensional points. 
@@ -13,12 +18,27 @@ import edu.princeton.cs.algs4.RedBlackBST;
  * 2d-trees have numerous applications, ranging from classifying astronomical objects 
  * to computer animation, to speeding up neural networks, to mining data, to image retrieval.
  * 
+ * This brute-force version is the baseline for KdTreeST. Next to the red-black tree, the 
+ * coordinates are kept in flat arrays, in the order the points were added, which range() 
+ * and nearest() scan straight through without building a Queue of keys or calling 
+ * distanceSquaredTo(). A removal (a put with a null value) marks the arrays stale, and 
+ * the next scan refills them from the tree.
+ * 
+ * VectorPointST, in the opt-in incubator/ source root, scans the same arrays with the
+ * Vector API; these plain loops are the fallback everywhere else.
+ * 
  * @author Nathan Clark
  * @author Kevin Mora
  * @author Dawood Ahmed
  */
 public class PointST<Value> {
 	private RedBlackBST<Point2D, Value> rbTree;
+	// package-private for VectorPointST
+	double[] xs = new double[16];
+	double[] ys = new double[16];
+	Point2D[] keys = new Point2D[16];
+	int n;
+	private boolean stale;
 
 	/**
 	 * Creates an empty ordered Symbol Table of points.
@@ -48,7 +68,31 @@ public class PointST<Value> {
 		if (p == null) {
 			throw new NullPointerException();
 		}
+		boolean present = rbTree.contains(p);
 		rbTree.put(p, val);
+		if (val == null) stale |= present;
+		else if (!present && !stale) append(p);
+	}
+
+	private void append(Point2D p) {
+		if (n == keys.length) {
+			xs = Arrays.copyOf(xs, 2 * n);
+			ys = Arrays.copyOf(ys, 2 * n);
+			keys = Arrays.copyOf(keys, 2 * n);
+		}
+		xs[n] = p.x();
+		ys[n] = p.y();
+		keys[n++] = p;
+	}
+
+	/**
+	 * Refills the arrays from the tree after a removal.
+	 */
+	void refresh() {
+		if (!stale) return;
+		stale = false;
+		n = 0;
+		for (Point2D p : rbTree.keys()) append(p);
 	}
 
 	/**
@@ -85,10 +129,12 @@ public class PointST<Value> {
 		if (rect == null) {
 			throw new NullPointerException("Rectangle cannot be null; error in method range()");
 		}
+		refresh();
+		double xmin = rect.xmin(), ymin = rect.ymin(), xmax = rect.xmax(), ymax = rect.ymax();
 		Queue<Point2D> queue2D = new Queue<>();
-		for (Point2D p : rbTree.keys()) {
-			if (rect.contains(p)) {
-				queue2D.enqueue(p);
+		for (int i = 0; i < n; i++) {
+			if (xs[i] >= xmin && xs[i] <= xmax && ys[i] >= ymin && ys[i] <= ymax) {
+				queue2D.enqueue(keys[i]);
 			}
 		}
 		return queue2D;
@@ -101,14 +147,52 @@ public class PointST<Value> {
 		if (p == null) {
 			throw new NullPointerException("Point cannot be null; error in method nearest()");
 		}
-		Point2D nearest = rbTree.max();
-		for (Point2D point : rbTree.keys()) {
-			if (p.distanceSquaredTo(point) < p.distanceSquaredTo(nearest)) {
-				nearest = point;
+		refresh();
+		double x = p.x(), y = p.y();
+		double best = Double.POSITIVE_INFINITY;
+		int nearest = -1;
+		for (int i = 0; i < n; i++) {
+			double dx = xs[i] - x, dy = ys[i] - y;
+			double d = dx * dx + dy * dy;
+			if (d < best) {
+				best = d;
+				nearest = i;
 			}
 		}
-		return nearest;
+		return nearest < 0 ? null : keys[nearest];
 	}
 
-	public static void main(String[] args) {}
+	/**
+	 * Client application: nearest() against KdTreeST on small prefixes of input100K.
+	 */
+	public static void main(String[] args) {
+		String filename = "src/points/input100K.txt";
+		In in = new In(filename);
+		Queue<Point2D> points = new Queue<>();
+		while (!in.isEmpty()) {
+			points.enqueue(new Point2D(in.readDouble(), in.readDouble()));
+		}
+		int numberOfTimesToCalculate = 1000000;
+		Point2D[] queries = new Point2D[numberOfTimesToCalculate];
+		for (int i = 0; i < numberOfTimesToCalculate; i++) {
+			queries[i] = new Point2D(StdRandom.uniform(), StdRandom.uniform());
+		}
+		for (int size : new int[] { 8, 32, 128, 512 }) {
+			PointST<Integer> brute = new PointST<>();
+			KdTreeST<Integer> kdtree = new KdTreeST<>();
+			int i = 0;
+			for (Point2D p : points) {
+				if (i == size) break;
+				brute.put(p, i);
+				kdtree.put(p, i++);
+			}
+			long starttime = System.currentTimeMillis();
+			for (Point2D q : queries) brute.nearest(q);
+			double bruteTime = (System.currentTimeMillis() - starttime) / 1000.0;
+			starttime = System.currentTimeMillis();
+			for (Point2D q : queries) kdtree.nearest(q);
+			double kdtreeTime = (System.currentTimeMillis() - starttime) / 1000.0;
+			StdOut.println(size + " points: PointST " + bruteTime + ", KdTreeST " + kdtreeTime);
+		}
+	}
 }
\ No newline at end of file
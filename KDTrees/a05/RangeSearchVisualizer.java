@@ -42,13 +42,12 @@ public class RangeSearchVisualizer {
         double x0 = 0.0, y0 = 0.0;      // initial endPoint of rectangle
         double x1 = 0.0, y1 = 0.0;      // current location of mouse
         boolean isDragging = false;     // is the user dragging a rectangle
+        RectHV last = null;             // rectangle currently on screen
 
-        // draw the points
+        // render the points once, then draw them as a single picture
+        RasterLayer cloud = new RasterLayer(kdtree.points(), 512, 512, 0.0, 0.0, 1.0, 1.0, StdDraw.BLACK, .01);
         StdDraw.clear();
-        StdDraw.setPenColor(StdDraw.BLACK);
-        StdDraw.setPenRadius(.01);
-        for (Point2D p : brute.points())
-            p.draw();
+        cloud.draw();
 
         while (true) {
             StdDraw.show(40);
@@ -77,12 +76,14 @@ public class RangeSearchVisualizer {
             RectHV rect = new RectHV(Math.min(x0, x1), Math.min(y0, y1),
                                      Math.max(x0, x1), Math.max(y0, y1));
             
+            // same rectangle as last time: the frame on screen is still right
+            if (rect.equals(last))
+                continue;
+            last = rect;
+            
             // draw the points
             StdDraw.clear();
-            StdDraw.setPenColor(StdDraw.BLACK);
-            StdDraw.setPenRadius(.01);
-            for (Point2D p : brute.points())
-                p.draw();
+            cloud.draw();
 
             // draw the rectangle
             StdDraw.setPenColor(StdDraw.BLACK);
@@ -0,0 +1,77 @@
+package a05;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import javax.imageio.ImageIO;
+
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.StdDraw;
+
+/**
+ * A static set of points rendered once into an offscreen image.
+ *
+ * Drawing 100K points through StdDraw costs 100K shape fills per frame, while the
+ * points themselves never move; the visualizers draw this layer instead, which is a
+ * single StdDraw.picture() no matter how many points it holds. StdDraw only takes
+ * pictures by file name, so the image is written once to a temporary PNG file.
+ *
+ * @author Kevin Mora
+ */
+public class RasterLayer {
+    private final String filename;
+    private final double xmin, ymin, xmax, ymax;
+
+    /**
+     * Renders the points inside [xmin, xmax] x [ymin, ymax] into a width-by-height image.
+     * @param penRadius ––> StdDraw pen radius: each point is a dot penRadius * width across
+     */
+    public RasterLayer(Iterable<Point2D> points, int width, int height,
+                       double xmin, double ymin, double xmax, double ymax,
+                       Color color, double penRadius) {
+        if (points == null || color == null) {
+            throw new NullPointerException();
+        }
+        if (width <= 0 || height <= 0 || xmax <= xmin || ymax <= ymin) {
+            throw new IllegalArgumentException("empty layer");
+        }
+        this.xmin = xmin;
+        this.ymin = ymin;
+        this.xmax = xmax;
+        this.ymax = ymax;
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(color);
+        double r = penRadius * width / 2;
+        for (Point2D p : points) {
+            double px = (p.x() - xmin) / (xmax - xmin) * width;
+            double py = (ymax - p.y()) / (ymax - ymin) * height;
+            g.fill(new Ellipse2D.Double(px - r, py - r, 2 * r, 2 * r));
+        }
+        g.dispose();
+
+        try {
+            File file = File.createTempFile("points", ".png");
+            file.deleteOnExit();
+            ImageIO.write(image, "png", file);
+            filename = file.getAbsolutePath();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Draws the layer over its rectangle in the current StdDraw scale.
+     */
+    public void draw() {
+        StdDraw.picture((xmin + xmax) / 2, (ymin + ymax) / 2, filename, xmax - xmin, ymax - ymin);
+    }
+}
@@ -0,0 +1,336 @@
+package a05;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.Queue;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+
+/**
+ * A symbol table of points split over a grid of tiles, one KdTreeST per tile.
+ *
+ * Each shard has its own read/write lock, so puts into different tiles run at the same
+ * time, and queries only wait for puts into the tiles they read. putAll() sorts the
+ * entries into their tiles and builds every shard on a separate fork/join task.
+ *
+ *     ┌─────┬─────┬─────┐   range() only reads the shards its rectangle overlaps, in parallel.
+ *     │     │ ┌───┼──┐  │   nearest() searches the home shard of p first, then only the
+ *     ├─────┼─┼───┼──┼──┤   shards closer to p than the best point so far, so it rarely
+ *     │     │ └───┼──┘  │   leaves the home shard.
+ *     ├─────┼─────┼─────┤
+ *     │  ◯  │     │     │   The tiles along the edges of the domain reach out to infinity,
+ *     └─────┴─────┴─────┘   so points outside the domain still have a shard.
+ *
+ * @author Kevin Mora
+ */
+public class ShardedKdTreeST<Value> {
+
+	private static class Shard<Value> {
+		private final RectHV region;
+		private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+		private KdTreeST<Value> tree = new KdTreeST<>();
+
+		Shard(RectHV region) {
+			this.region = region;
+		}
+	}
+
+	private final double xmin, ymin, width, height;
+	private final int tiles;
+	private final Shard<Value>[] shards;
+
+	/**
+	 * Creates an empty symbol table split into tiles x tiles shards over the domain.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public ShardedKdTreeST(RectHV domain, int tiles) {
+		if (domain == null) {
+			throw new NullPointerException();
+		}
+		if (tiles < 1 || domain.width() <= 0 || domain.height() <= 0) {
+			throw new IllegalArgumentException("need at least one tile over a domain with an area");
+		}
+		this.xmin = domain.xmin();
+		this.ymin = domain.ymin();
+		this.width = domain.width() / tiles;
+		this.height = domain.height() / tiles;
+		this.tiles = tiles;
+		shards = new Shard[tiles * tiles];
+		for (int row = 0; row < tiles; row++) {
+			for (int col = 0; col < tiles; col++) {
+				double x0 = col == 0 ? - Double.MAX_VALUE : xmin + col * width;
+				double y0 = row == 0 ? - Double.MAX_VALUE : ymin + row * height;
+				double x1 = col == tiles - 1 ? Double.MAX_VALUE : xmin + (col + 1) * width;
+				double y1 = row == tiles - 1 ? Double.MAX_VALUE : ymin + (row + 1) * height;
+				shards[row * tiles + col] = new Shard<>(new RectHV(x0, y0, x1, y1));
+			}
+		}
+	}
+
+	private int column(double x) {
+		return Math.max(0, Math.min(tiles - 1, (int) Math.floor((x - xmin) / width)));
+	}
+
+	private int row(double y) {
+		return Math.max(0, Math.min(tiles - 1, (int) Math.floor((y - ymin) / height)));
+	}
+
+	/**
+	 * The shard whose tile holds p.
+	 */
+	private Shard<Value> home(Point2D p) {
+		return shards[row(p.y()) * tiles + column(p.x())];
+	}
+
+	/**
+	 * Returns the number of points.
+	 */
+	public int size() {
+		int size = 0;
+		for (Shard<Value> shard : shards) {
+			shard.lock.readLock().lock();
+			try {
+				size += shard.tree.size();
+			} finally {
+				shard.lock.readLock().unlock();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Returns the status of the symbol table.
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Associates the value with the point.
+	 */
+	public void put(Point2D p, Value val) {
+		if (p == null || val == null) {
+			throw new NullPointerException();
+		}
+		Shard<Value> shard = home(p);
+		shard.lock.writeLock().lock();
+		try {
+			shard.tree.put(p, val);
+		} finally {
+			shard.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Puts every entry, one fork/join task per shard; later entries for the same point win.
+	 * A shard that was empty is built balanced from its entries in one go.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void putAll(Iterable<? extends KdTreeST.Entry<Value>> entries) {
+		if (entries == null) {
+			throw new NullPointerException();
+		}
+		Queue<KdTreeST.Entry<Value>>[] buckets = new Queue[shards.length];
+		for (KdTreeST.Entry<Value> e : entries) {
+			if (e.point() == null || e.value() == null) {
+				throw new NullPointerException();
+			}
+			int i = row(e.point().y()) * tiles + column(e.point().x());
+			if (buckets[i] == null) buckets[i] = new Queue<>();
+			buckets[i].enqueue(e);
+		}
+		ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
+		for (int i = 0; i < shards.length; i++) {
+			if (buckets[i] == null) continue;
+			Shard<Value> shard = shards[i];
+			Queue<KdTreeST.Entry<Value>> bucket = buckets[i];
+			tasks.add(ForkJoinTask.adapt(() -> {
+				shard.lock.writeLock().lock();
+				try {
+					if (shard.tree.isEmpty()) shard.tree = KdTreeST.balanced(bucket);
+					else for (KdTreeST.Entry<Value> e : bucket) shard.tree.put(e.point(), e.value());
+				} finally {
+					shard.lock.writeLock().unlock();
+				}
+			}));
+		}
+		ForkJoinTask.invokeAll(tasks);
+	}
+
+	/**
+	 * Removes the point (and its value) from the Symbol Table.
+	 */
+	public void delete(Point2D p) {
+		if (p == null) {
+			throw new NullPointerException();
+		}
+		Shard<Value> shard = home(p);
+		shard.lock.writeLock().lock();
+		try {
+			shard.tree.delete(p);
+		} finally {
+			shard.lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the value associated with a point.
+	 */
+	public Value get(Point2D p) {
+		if (p == null) {
+			throw new NullPointerException("arguments can't be null");
+		}
+		Shard<Value> shard = home(p);
+		shard.lock.readLock().lock();
+		try {
+			return shard.tree.get(p);
+		} finally {
+			shard.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Determines if Symbol Table has a point.
+	 */
+	public boolean contains(Point2D p) {
+		return get(p) != null;
+	}
+
+	/**
+	 * Returns all the points that are inside the rectangle.
+	 */
+	public Iterable<Point2D> range(RectHV rect) {
+		if (rect == null) {
+			throw new NullPointerException();
+		}
+		ArrayList<ForkJoinTask<Iterable<Point2D>>> tasks = new ArrayList<>();
+		for (int row = row(rect.ymin()); row <= row(rect.ymax()); row++) {
+			for (int col = column(rect.xmin()); col <= column(rect.xmax()); col++) {
+				Shard<Value> shard = shards[row * tiles + col];
+				tasks.add(ForkJoinTask.adapt(() -> {
+					shard.lock.readLock().lock();
+					try {
+						return shard.tree.range(rect);
+					} finally {
+						shard.lock.readLock().unlock();
+					}
+				}));
+			}
+		}
+		if (tasks.size() == 1) tasks.get(0).invoke();
+		else ForkJoinTask.invokeAll(tasks);
+		Queue<Point2D> rectPoints = new Queue<>();
+		for (ForkJoinTask<Iterable<Point2D>> task : tasks) {
+			for (Point2D q : task.join()) rectPoints.enqueue(q);
+		}
+		return rectPoints;
+	}
+
+	/**
+	 * Returns the nearest neighbor to point p;
+	 * null if the Symbol Table is empty.
+	 */
+	public Point2D nearest(Point2D p) {
+		KdTreeST.Entry<Value> nearest = nearestEntry(p);
+		return nearest == null ? null : nearest.point();
+	}
+
+	/**
+	 * Returns the entry of the nearest neighbor to point p;
+	 * null if the Symbol Table is empty.
+	 */
+	public KdTreeST.Entry<Value> nearestEntry(Point2D p) {
+		if (p == null) {
+			throw new NullPointerException();
+		}
+		Shard<Value> home = home(p);
+		KdTreeST.Entry<Value> best = nearest(home, p, null);
+		// only the tiles within the best distance so far can hold a closer point
+		double r = best == null ? Double.POSITIVE_INFINITY : p.distanceTo(best.point());
+		for (int row = row(p.y() - r); row <= row(p.y() + r); row++) {
+			for (int col = column(p.x() - r); col <= column(p.x() + r); col++) {
+				Shard<Value> shard = shards[row * tiles + col];
+				if (shard == home) continue;
+				if (best == null || shard.region.distanceSquaredTo(p) < p.distanceSquaredTo(best.point())) {
+					best = nearest(shard, p, best);
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Private helper method for nearestEntry(); the closer of best and the nearest point in the shard.
+	 */
+	private static <Value> KdTreeST.Entry<Value> nearest(Shard<Value> shard, Point2D p, KdTreeST.Entry<Value> best) {
+		shard.lock.readLock().lock();
+		try {
+			KdTreeST.Entry<Value> e = shard.tree.nearestEntry(p);
+			if (e == null || best != null && p.distanceSquaredTo(e.point()) >= p.distanceSquaredTo(best.point())) return best;
+			return e;
+		} finally {
+			shard.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Client application: one KdTreeST behind a single lock against 8 x 8 shards,
+	 * loaded and queried from every core.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		String filename = "src/points/input100K.txt";
+		In in = new In(filename);
+		Queue<KdTreeST.Entry<Integer>> entries = new Queue<>();
+		for (int i = 0; !in.isEmpty(); i++) {
+			entries.enqueue(new KdTreeST.Node<>(new Point2D(in.readDouble(), in.readDouble()), i, null));
+		}
+		int cores = Runtime.getRuntime().availableProcessors();
+
+		long starttime = System.currentTimeMillis();
+		KdTreeST<Integer> kdtree = KdTreeST.balanced(entries);
+		StdOut.println("KdTreeST build: " + (System.currentTimeMillis() - starttime) / 1000.0);
+		starttime = System.currentTimeMillis();
+		ShardedKdTreeST<Integer> sharded = new ShardedKdTreeST<>(new RectHV(0, 0, 1, 1), 8);
+		sharded.putAll(entries);
+		StdOut.println("ShardedKdTreeST build: " + (System.currentTimeMillis() - starttime) / 1000.0);
+
+		int numberOfTimesToCalculate = 100000;
+		Thread[] threads = new Thread[cores];
+		starttime = System.currentTimeMillis();
+		for (int t = 0; t < cores; t++) {
+			threads[t] = new Thread(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				for (int i = 0; i < numberOfTimesToCalculate; i++) {
+					Point2D p = new Point2D(random.nextDouble(), random.nextDouble());
+					synchronized (kdtree) {
+						if (i % 10 == 0) kdtree.put(p, i);
+						else kdtree.nearest(p);
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) thread.join();
+		StdOut.println("KdTreeST, " + cores + " threads, 10% puts: " + (System.currentTimeMillis() - starttime) / 1000.0);
+
+		starttime = System.currentTimeMillis();
+		for (int t = 0; t < cores; t++) {
+			threads[t] = new Thread(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				for (int i = 0; i < numberOfTimesToCalculate; i++) {
+					Point2D p = new Point2D(random.nextDouble(), random.nextDouble());
+					if (i % 10 == 0) sharded.put(p, i);
+					else sharded.nearest(p);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) thread.join();
+		StdOut.println("ShardedKdTreeST, " + cores + " threads, 10% puts: " + (System.currentTimeMillis() - starttime) / 1000.0);
+	}
+}
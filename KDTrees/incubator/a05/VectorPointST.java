@@ -0,0 +1,135 @@
+package a05;
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.Queue;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A PointST whose range() and nearest() scan the coordinate arrays with the Vector API,
+ * as many points per instruction as the preferred vector shape holds.
+ *
+ * nearest() keeps the best squared distance as a scalar and only looks at the lanes of
+ * a vector whose minimum beats it, which after the first few vectors is almost never.
+ * range() tests all four sides of the rectangle on a whole vector at once and only
+ * enqueues the lanes that pass. The points past the last full vector are scanned one
+ * at a time, exactly as PointST does.
+ *
+ * jdk.incubator.vector has to be added to every compile and run, so this class lives in
+ * its own source root, incubator/, and is left out of the default build.
+ *
+ * @author Kevin Mora
+ */
+public class VectorPointST<Value> extends PointST<Value> {
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	/**
+	 * All points that are inside the rectangle.
+	 */
+	@Override
+	public Iterable<Point2D> range(RectHV rect) {
+		if (rect == null) {
+			throw new NullPointerException("Rectangle cannot be null; error in method range()");
+		}
+		refresh();
+		double xmin = rect.xmin(), ymin = rect.ymin(), xmax = rect.xmax(), ymax = rect.ymax();
+		Queue<Point2D> queue2D = new Queue<>();
+		int i = 0;
+		for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+			DoubleVector x = DoubleVector.fromArray(SPECIES, xs, i);
+			DoubleVector y = DoubleVector.fromArray(SPECIES, ys, i);
+			VectorMask<Double> inside = x.compare(VectorOperators.GE, xmin)
+					.and(x.compare(VectorOperators.LE, xmax))
+					.and(y.compare(VectorOperators.GE, ymin))
+					.and(y.compare(VectorOperators.LE, ymax));
+			if (!inside.anyTrue()) continue;
+			for (int lane = 0; lane < SPECIES.length(); lane++) {
+				if (inside.laneIsSet(lane)) queue2D.enqueue(keys[i + lane]);
+			}
+		}
+		for (; i < n; i++) {
+			if (xs[i] >= xmin && xs[i] <= xmax && ys[i] >= ymin && ys[i] <= ymax) {
+				queue2D.enqueue(keys[i]);
+			}
+		}
+		return queue2D;
+	}
+
+	/**
+	 * A nearest neighbor to point p; null if the symbol table is empty.
+	 */
+	@Override
+	public Point2D nearest(Point2D p) {
+		if (p == null) {
+			throw new NullPointerException("Point cannot be null; error in method nearest()");
+		}
+		refresh();
+		double x = p.x(), y = p.y();
+		double best = Double.POSITIVE_INFINITY;
+		int nearest = -1;
+		int i = 0;
+		for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+			DoubleVector dx = DoubleVector.fromArray(SPECIES, xs, i).sub(x);
+			DoubleVector dy = DoubleVector.fromArray(SPECIES, ys, i).sub(y);
+			DoubleVector d = dx.mul(dx).add(dy.mul(dy));
+			if (d.reduceLanes(VectorOperators.MIN) >= best) continue;
+			for (int lane = 0; lane < SPECIES.length(); lane++) {
+				double dl = d.lane(lane);
+				if (dl < best) {
+					best = dl;
+					nearest = i + lane;
+				}
+			}
+		}
+		for (; i < n; i++) {
+			double dx = xs[i] - x, dy = ys[i] - y;
+			double d = dx * dx + dy * dy;
+			if (d < best) {
+				best = d;
+				nearest = i;
+			}
+		}
+		return nearest < 0 ? null : keys[nearest];
+	}
+
+	/**
+	 * Client application: nearest() of PointST against VectorPointST on prefixes of input100K.
+	 */
+	public static void main(String[] args) {
+		String filename = "src/points/input100K.txt";
+		In in = new In(filename);
+		Queue<Point2D> points = new Queue<>();
+		while (!in.isEmpty()) {
+			points.enqueue(new Point2D(in.readDouble(), in.readDouble()));
+		}
+		int numberOfTimesToCalculate = 100000;
+		Point2D[] queries = new Point2D[numberOfTimesToCalculate];
+		for (int i = 0; i < numberOfTimesToCalculate; i++) {
+			queries[i] = new Point2D(StdRandom.uniform(), StdRandom.uniform());
+		}
+		StdOut.println(SPECIES.length() + " doubles per vector");
+		for (int size : new int[] { 32, 512, 8192 }) {
+			PointST<Integer> scalar = new PointST<>();
+			VectorPointST<Integer> vector = new VectorPointST<>();
+			int i = 0;
+			for (Point2D p : points) {
+				if (i == size) break;
+				scalar.put(p, i);
+				vector.put(p, i++);
+			}
+			long starttime = System.currentTimeMillis();
+			for (Point2D q : queries) scalar.nearest(q);
+			double scalarTime = (System.currentTimeMillis() - starttime) / 1000.0;
+			starttime = System.currentTimeMillis();
+			for (Point2D q : queries) vector.nearest(q);
+			double vectorTime = (System.currentTimeMillis() - starttime) / 1000.0;
+			StdOut.println(size + " points: PointST " + scalarTime + ", VectorPointST " + vectorTime);
+		}
+	}
+}
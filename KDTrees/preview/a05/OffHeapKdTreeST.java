@@ -0,0 +1,362 @@
+package a05;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+import edu.princeton.cs.algs4.In;
+import edu.princeton.cs.algs4.Point2D;
+import edu.princeton.cs.algs4.Queue;
+import edu.princeton.cs.algs4.RectHV;
+import edu.princeton.cs.algs4.StdOut;
+import edu.princeton.cs.algs4.StdRandom;
+
+/**
+ * A 2d-tree whose nodes live outside the Java heap.
+ *
+ * Same search and insert rules as KdTreeST, but every node is a fixed 32-byte
+ * record in a MemorySegment owned by an Arena instead of a Node object:
+ *
+ *      0        8        16          24      28      32
+ *      ┌────────┬────────┬───────────┬───────┬───────┐
+ *      │   x    │   y    │  handle   │ left  │ right │
+ *      └────────┴────────┴───────────┴───────┴───────┘
+ *
+ * The rectangle of a node isn't stored; it is narrowed on the way down from
+ * the splitting coordinates, exactly as rectCreator() builds it in KdTreeST.
+ * Values can't leave the heap, so every point maps to a long handle (a row id,
+ * a file offset, ...) that the client resolves itself.
+ *
+ * Records are allocated in chunks of 2^20 nodes; record 0 is a header holding
+ * the size, which also lets 0 act as the null child. The tree is either held in
+ * native memory or mapped onto a file, in which case it survives close() and
+ * can be reopened. Nothing is freed until close(); after that the tree is unusable.
+ *
+ * java.lang.foreign is final only from Java 22 (a preview in 21), so this class lives
+ * in its own source root, preview/, and is left out of the default build.
+ *
+ * @author Kevin Mora
+ */
+public class OffHeapKdTreeST implements AutoCloseable {
+	/** Returned by get() and nearestHandle() when there is no such point. */
+	public static final long NO_HANDLE = -1;
+
+	private static final int NODE_BYTES = 32;
+	private static final long X = 0, Y = 8, HANDLE = 16, LEFT = 24, RIGHT = 28;
+	private static final int CHUNK_BITS = 20;
+	private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+	private static final long CHUNK_BYTES = (long) NODE_BYTES << CHUNK_BITS;
+
+	private final Arena arena;
+	private final FileChannel file;
+	private final ArrayList<MemorySegment> chunks = new ArrayList<>();
+	private int size;
+
+	/**
+	 * Creates an empty symbol table of points in native memory.
+	 */
+	public OffHeapKdTreeST() {
+		arena = Arena.ofShared();
+		file = null;
+		grow();
+	}
+
+	/**
+	 * Opens the symbol table of points mapped onto the given file,
+	 * creating it if it doesn't exist.
+	 */
+	public OffHeapKdTreeST(Path path) throws IOException {
+		if (path == null) {
+			throw new NullPointerException();
+		}
+		arena = Arena.ofShared();
+		file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		grow();
+		size = (int) chunks.get(0).get(ValueLayout.JAVA_LONG, HANDLE);
+		while (chunks.size() <= (size >>> CHUNK_BITS)) {
+			grow();
+		}
+	}
+
+	/**
+	 * Returns the number of points.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the status of the symbol table.
+	 */
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Associates the handle with the point.
+	 */
+	public void put(Point2D p, long handle) {
+		if (p == null) {
+			throw new NullPointerException();
+		}
+		if (handle < 0) {
+			throw new IllegalArgumentException("handle can't be negative");
+		}
+		double px = p.x(), py = p.y();
+		if (size == 0) {
+			append(px, py, handle);
+			return;
+		}
+		int node = 1;
+		boolean vertical = true;
+		while (true) {
+			double x = x(node), y = y(node);
+			long child;
+			if ((vertical ? px - x : py - y) < 0)
+				child = LEFT;
+			else if (px == x && py == y) {
+				segment(node).set(ValueLayout.JAVA_LONG, offset(node) + HANDLE, handle);
+				return;
+			}
+			else
+				child = RIGHT;
+			int next = segment(node).get(ValueLayout.JAVA_INT, offset(node) + child);
+			if (next == 0) {
+				next = append(px, py, handle);
+				segment(node).set(ValueLayout.JAVA_INT, offset(node) + child, next);
+				return;
+			}
+			node = next;
+			vertical = !vertical;
+		}
+	}
+
+	/**
+	 * Returns the handle associated with a point; NO_HANDLE if there is none.
+	 */
+	public long get(Point2D p) {
+		if (p == null) {
+			throw new NullPointerException("arguments can't be null");
+		}
+		double px = p.x(), py = p.y();
+		int node = size == 0 ? 0 : 1;
+		boolean vertical = true;
+		while (node != 0) {
+			double x = x(node), y = y(node);
+			if ((vertical ? px - x : py - y) < 0)
+				node = left(node);
+			else if (px == x && py == y)
+				return handle(node);
+			else
+				node = right(node);
+			vertical = !vertical;
+		}
+		return NO_HANDLE;
+	}
+
+	/**
+	 * Determines if Symbol Table has a point.
+	 */
+	public boolean contains(Point2D p) {
+		return get(p) != NO_HANDLE;
+	}
+
+	/**
+	 * Returns all the points that are inside the rectangle.
+	 */
+	public Iterable<Point2D> range(RectHV rect) {
+		if (rect == null) {
+			throw new NullPointerException();
+		}
+		Queue<Point2D> rectPoints = new Queue<>();
+		if (size > 0) {
+			range(rect, rectPoints, 1, true, -Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE);
+		}
+		return rectPoints;
+	}
+
+	private void range(RectHV rect, Queue<Point2D> rectPoints, int node, boolean vertical,
+			double xmin, double ymin, double xmax, double ymax) {
+		if (node == 0 || xmax < rect.xmin() || xmin > rect.xmax() || ymax < rect.ymin() || ymin > rect.ymax()) return;
+		double x = x(node), y = y(node);
+		if (x >= rect.xmin() && x <= rect.xmax() && y >= rect.ymin() && y <= rect.ymax()) {
+			rectPoints.enqueue(new Point2D(x, y));
+		}
+		if (vertical) {
+			range(rect, rectPoints, left(node), false, xmin, ymin, x, ymax);
+			range(rect, rectPoints, right(node), false, x, ymin, xmax, ymax);
+		} else {
+			range(rect, rectPoints, left(node), true, xmin, ymin, xmax, y);
+			range(rect, rectPoints, right(node), true, xmin, y, xmax, ymax);
+		}
+	}
+
+	/**
+	 * Returns the nearest neighbor to point p;
+	 * null if the Symbol Table is empty.
+	 */
+	public Point2D nearest(Point2D p) {
+		int node = nearestNode(p);
+		return node == 0 ? null : new Point2D(x(node), y(node));
+	}
+
+	/**
+	 * Returns the handle of the nearest neighbor to point p;
+	 * NO_HANDLE if the Symbol Table is empty.
+	 */
+	public long nearestHandle(Point2D p) {
+		int node = nearestNode(p);
+		return node == 0 ? NO_HANDLE : handle(node);
+	}
+
+	private int nearestNode(Point2D p) {
+		if (p == null) {
+			throw new NullPointerException();
+		}
+		if (size == 0) return 0;
+		return nearest(p.x(), p.y(), 1, true, -Double.MAX_VALUE, -Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE, 1);
+	}
+
+	/**
+	 * Private helper method for nearest; same pruning rule as KdTreeST,
+	 * with the node's rectangle passed down as its four bounds.
+	 */
+	private int nearest(double px, double py, int node, boolean vertical,
+			double xmin, double ymin, double xmax, double ymax, int paragon) {
+		if (node == 0) {
+			return paragon;
+		}
+		double dx = px < xmin ? xmin - px : px > xmax ? px - xmax : 0;
+		double dy = py < ymin ? ymin - py : py > ymax ? py - ymax : 0;
+		double best = distanceSquared(px, py, paragon);
+		if (dx * dx + dy * dy > best) return paragon;
+		double x = x(node), y = y(node);
+		if (distanceSquared(px, py, node) < best) paragon = node;
+
+		if (vertical) {
+			if (px < x) {
+				paragon = nearest(px, py, left(node), false, xmin, ymin, x, ymax, paragon);
+				paragon = nearest(px, py, right(node), false, x, ymin, xmax, ymax, paragon);
+			} else {
+				paragon = nearest(px, py, right(node), false, x, ymin, xmax, ymax, paragon);
+				paragon = nearest(px, py, left(node), false, xmin, ymin, x, ymax, paragon);
+			}
+		} else {
+			if (py < y) {
+				paragon = nearest(px, py, left(node), true, xmin, ymin, xmax, y, paragon);
+				paragon = nearest(px, py, right(node), true, xmin, y, xmax, ymax, paragon);
+			} else {
+				paragon = nearest(px, py, right(node), true, xmin, y, xmax, ymax, paragon);
+				paragon = nearest(px, py, left(node), true, xmin, ymin, xmax, y, paragon);
+			}
+		}
+		return paragon;
+	}
+
+	/**
+	 * Releases the native memory (or unmaps the file);
+	 * the symbol table can't be used afterwards.
+	 */
+	public void close() throws IOException {
+		arena.close();
+		if (file != null) {
+			file.close();
+		}
+	}
+
+	/* ––––––––––––––––––––––––– record access ––––––––––––––––––––––––– */
+
+	private int append(double x, double y, long handle) {
+		int node = ++size;
+		if ((node >>> CHUNK_BITS) == chunks.size()) {
+			grow();
+		}
+		MemorySegment chunk = segment(node);
+		long offset = offset(node);
+		chunk.set(ValueLayout.JAVA_DOUBLE, offset + X, x);
+		chunk.set(ValueLayout.JAVA_DOUBLE, offset + Y, y);
+		chunk.set(ValueLayout.JAVA_LONG, offset + HANDLE, handle);
+		chunk.set(ValueLayout.JAVA_INT, offset + LEFT, 0);
+		chunk.set(ValueLayout.JAVA_INT, offset + RIGHT, 0);
+		chunks.get(0).set(ValueLayout.JAVA_LONG, HANDLE, size);
+		return node;
+	}
+
+	private void grow() {
+		if (file == null) {
+			chunks.add(arena.allocate(CHUNK_BYTES, NODE_BYTES));
+			return;
+		}
+		try {
+			chunks.add(file.map(FileChannel.MapMode.READ_WRITE, chunks.size() * CHUNK_BYTES, CHUNK_BYTES, arena));
+		} catch (IOException e) {
+			throw new IllegalStateException("can't map chunk " + chunks.size(), e);
+		}
+	}
+
+	private MemorySegment segment(int node) {
+		return chunks.get(node >>> CHUNK_BITS);
+	}
+
+	private static long offset(int node) {
+		return (long) (node & CHUNK_MASK) * NODE_BYTES;
+	}
+
+	private double x(int node) {
+		return segment(node).get(ValueLayout.JAVA_DOUBLE, offset(node) + X);
+	}
+
+	private double y(int node) {
+		return segment(node).get(ValueLayout.JAVA_DOUBLE, offset(node) + Y);
+	}
+
+	private long handle(int node) {
+		return segment(node).get(ValueLayout.JAVA_LONG, offset(node) + HANDLE);
+	}
+
+	private int left(int node) {
+		return segment(node).get(ValueLayout.JAVA_INT, offset(node) + LEFT);
+	}
+
+	private int right(int node) {
+		return segment(node).get(ValueLayout.JAVA_INT, offset(node) + RIGHT);
+	}
+
+	private double distanceSquared(double px, double py, int node) {
+		double dx = px - x(node), dy = py - y(node);
+		return dx * dx + dy * dy;
+	}
+
+	/**
+	 * Client application: the KdTreeST benchmark against the off-heap tree.
+	 */
+	public static void main(String[] args) throws IOException {
+		String filename = "src/points/input100K.txt";
+		In in = new In(filename);
+
+		try (OffHeapKdTreeST kdtree = new OffHeapKdTreeST()) {
+			for (int i = 0; !in.isEmpty(); i++) {
+				double x = in.readDouble();
+				double y = in.readDouble();
+				kdtree.put(new Point2D(x, y), i);
+			}
+			Runtime runtime = Runtime.getRuntime();
+			StdOut.println("Heap used: " + (runtime.totalMemory() - runtime.freeMemory()) / (1 << 20) + " MB");
+			StdOut.println("Starting");
+			long starttime = System.currentTimeMillis();
+			int numberOfTimesToCalculate = 10000000;
+			for (int i = 0; i < numberOfTimesToCalculate; i++) {
+				kdtree.nearestHandle(new Point2D(StdRandom.uniform(), StdRandom.uniform()));
+			}
+			long endtime = System.currentTimeMillis();
+			double timeTakenInSeconds = (endtime - starttime) / 1000.0;
+			StdOut.println("Total time: " + timeTakenInSeconds);
+			StdOut.println("Average per second: " + numberOfTimesToCalculate / timeTakenInSeconds);
+		}
+	}
+}